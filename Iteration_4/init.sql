@@ -4,9 +4,13 @@
 USE train_system;
 
 -- Drop existing tables if they exist (for clean setup)
+DROP TABLE IF EXISTS TripLeg;
 DROP TABLE IF EXISTS Reservation;
 DROP TABLE IF EXISTS Trip;
 DROP TABLE IF EXISTS Customer;
+DROP TABLE IF EXISTS IdSequence;
+DROP TABLE IF EXISTS SeatInventory;
+DROP TABLE IF EXISTS SchemaVersion;
 
 -- Create Customer table
 CREATE TABLE Customer (
@@ -14,6 +18,7 @@ CREATE TABLE Customer (
     first_name VARCHAR(50) NOT NULL,
     last_name VARCHAR(50) NOT NULL,
     age INT NOT NULL,
+    -- also serves the trip history lookup (WHERE last_name = ? AND identifier = ?)
     identifier VARCHAR(50) NOT NULL UNIQUE,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
@@ -24,12 +29,28 @@ CREATE TABLE Trip (
     customer_id INT NOT NULL,
     origin VARCHAR(100) NOT NULL,
     destination VARCHAR(100) NOT NULL,
+    -- DayOfWeek value (1 = Monday .. 7 = Sunday); the path is rendered from TripLeg
+    departure_day TINYINT NULL,
+    -- rendered path, only written by older versions
     path_description TEXT,
-    route VARCHAR(255),
+    -- date the first train leaves and seat class, NULL for trips booked without seats
+    travel_date DATE NULL,
+    seat_class VARCHAR(6) NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    -- a customer's trips in trip_id order
+    INDEX idx_trip_customer_trip (customer_id, trip_id),
     FOREIGN KEY (customer_id) REFERENCES Customer(customer_id) ON DELETE CASCADE
 );
 
+-- Create TripLeg table (the trains of a trip, in travel order)
+CREATE TABLE TripLeg (
+    trip_id INT NOT NULL,
+    seq TINYINT NOT NULL,
+    route_id VARCHAR(20) NOT NULL,
+    PRIMARY KEY (trip_id, seq),
+    FOREIGN KEY (trip_id) REFERENCES Trip(trip_id) ON DELETE CASCADE
+);
+
 
 -- Create Reservation table
 CREATE TABLE Reservation (
@@ -41,16 +62,49 @@ CREATE TABLE Reservation (
     passenger_id VARCHAR(50) NOT NULL,
     ticket_number VARCHAR(100) NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_reservation_ticket (ticket_number),
     FOREIGN KEY (trip_id) REFERENCES Trip(trip_id) ON DELETE CASCADE
 );
 
+-- Create IdSequence table (next free in-memory Trip / Reservation id, reserved in blocks)
+CREATE TABLE IdSequence (
+    name VARCHAR(50) PRIMARY KEY,
+    next_value BIGINT NOT NULL
+);
+INSERT INTO IdSequence (name, next_value) VALUES ('Trip', 1), ('Reservation', 1);
+
+-- Create SeatInventory table (seats sold per train, date it leaves on and class)
+CREATE TABLE SeatInventory (
+    route_id VARCHAR(20) NOT NULL,
+    travel_date DATE NOT NULL,
+    seat_class VARCHAR(6) NOT NULL,
+    sold INT NOT NULL,
+    PRIMARY KEY (route_id, travel_date, seat_class)
+);
+
+-- Create SchemaVersion table (migrations already applied, see make migrate-db)
+-- This script includes every migration so far; add a row here with each new one
+CREATE TABLE SchemaVersion (
+    name VARCHAR(100) PRIMARY KEY,
+    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+INSERT INTO SchemaVersion (name) VALUES
+    ('migrate_001_trip_legs.sql'),
+    ('migrate_002_trip_departure_day.sql'),
+    ('migrate_003_id_sequence.sql'),
+    ('migrate_004_seat_inventory.sql');
+
 -- Display the created tables
 SHOW TABLES;
 
 -- Display table structures
 DESCRIBE Customer;
 DESCRIBE Trip;
+DESCRIBE TripLeg;
 DESCRIBE Reservation;
+DESCRIBE IdSequence;
+DESCRIBE SeatInventory;
+DESCRIBE SchemaVersion;
 
 SELECT 'Database tables initialized successfully!' AS Status;
 
@@ -0,0 +1,41 @@
+-- Migration 001: indexes for the trip history query and TripLeg
+-- Upgrades a database created with the previous init.sql; applied once by:
+--   make migrate-db   (from src/)
+
+USE train_system;
+
+-- Indexes (the Customer lookup uses the UNIQUE index on identifier)
+CREATE INDEX idx_trip_customer_trip ON Trip (customer_id, trip_id);
+CREATE INDEX idx_reservation_ticket ON Reservation (ticket_number);
+
+-- Trains of a trip, one row per leg instead of the pipe-delimited Trip.route
+CREATE TABLE TripLeg (
+    trip_id INT NOT NULL,
+    seq TINYINT NOT NULL,
+    route_id VARCHAR(20) NOT NULL,
+    PRIMARY KEY (trip_id, seq),
+    FOREIGN KEY (trip_id) REFERENCES Trip(trip_id) ON DELETE CASCADE
+);
+
+-- Split every existing route ("R1|R2|R3") into legs
+INSERT INTO TripLeg (trip_id, seq, route_id)
+WITH RECURSIVE legs (trip_id, seq, route_id, rest) AS (
+    SELECT trip_id,
+           0,
+           SUBSTRING_INDEX(route, '|', 1),
+           IF(LOCATE('|', route) > 0, SUBSTRING(route, LOCATE('|', route) + 1), NULL)
+    FROM Trip
+    WHERE route IS NOT NULL AND route <> ''
+    UNION ALL
+    SELECT trip_id,
+           seq + 1,
+           SUBSTRING_INDEX(rest, '|', 1),
+           IF(LOCATE('|', rest) > 0, SUBSTRING(rest, LOCATE('|', rest) + 1), NULL)
+    FROM legs
+    WHERE rest IS NOT NULL
+)
+SELECT trip_id, seq, TRIM(route_id) FROM legs;
+
+ALTER TABLE Trip DROP COLUMN route;
+
+SELECT 'Migration 001 applied successfully!' AS Status;
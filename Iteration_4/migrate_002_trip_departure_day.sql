@@ -0,0 +1,9 @@
+-- Migration 002: store the departure day of a trip instead of its rendered path
+-- Existing trips keep path_description and are shown with it; applied once by:
+--   make migrate-db   (from src/)
+
+USE train_system;
+
+ALTER TABLE Trip ADD COLUMN departure_day TINYINT NULL AFTER destination;
+
+SELECT 'Migration 002 applied successfully!' AS Status;
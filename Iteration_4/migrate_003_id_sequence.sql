@@ -0,0 +1,20 @@
+-- Migration 003: id sequences shared by every planner instance
+-- Replaces the MAX() lookups done at startup; applied once by:
+--   make migrate-db   (from src/)
+
+USE train_system;
+
+CREATE TABLE IdSequence (
+    name VARCHAR(50) PRIMARY KEY,
+    next_value BIGINT NOT NULL
+);
+
+-- Continue after the ids already in use; ticket numbers are "TICKET-<reservation id>"
+INSERT INTO IdSequence (name, next_value)
+SELECT 'Trip', COALESCE(MAX(trip_id), 0) + 1 FROM Trip;
+INSERT INTO IdSequence (name, next_value)
+SELECT 'Reservation', GREATEST(COALESCE(MAX(reservation_id), 0),
+                               COALESCE(MAX(CAST(SUBSTRING(ticket_number, 8) AS UNSIGNED)), 0)) + 1
+FROM Reservation;
+
+SELECT 'Migration 003 applied successfully!' AS Status;
@@ -0,0 +1,19 @@
+-- Migration 004: seats sold per train, date and class, shared by every planner instance
+-- Trips booked before this migration have no date or class and hold no seats; applied once by:
+--   make migrate-db   (from src/)
+
+USE train_system;
+
+ALTER TABLE Trip
+    ADD COLUMN travel_date DATE NULL AFTER path_description,
+    ADD COLUMN seat_class VARCHAR(6) NULL AFTER travel_date;
+
+CREATE TABLE SeatInventory (
+    route_id VARCHAR(20) NOT NULL,
+    travel_date DATE NOT NULL,
+    seat_class VARCHAR(6) NOT NULL,
+    sold INT NOT NULL,
+    PRIMARY KEY (route_id, travel_date, seat_class)
+);
+
+SELECT 'Migration 004 applied successfully!' AS Status;
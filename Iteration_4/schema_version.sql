@@ -0,0 +1,27 @@
+-- Migrations applied to this database, checked by make migrate-db before running each one
+-- Safe to run any number of times
+
+USE train_system;
+
+CREATE TABLE IF NOT EXISTS SchemaVersion (
+    name VARCHAR(100) PRIMARY KEY,
+    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Databases migrated before SchemaVersion existed: record the migrations whose
+-- tables or columns are already there. Later migrations are recorded when applied.
+INSERT IGNORE INTO SchemaVersion (name)
+SELECT 'migrate_001_trip_legs.sql' FROM information_schema.TABLES
+WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'TripLeg';
+
+INSERT IGNORE INTO SchemaVersion (name)
+SELECT 'migrate_002_trip_departure_day.sql' FROM information_schema.COLUMNS
+WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'Trip' AND COLUMN_NAME = 'departure_day';
+
+INSERT IGNORE INTO SchemaVersion (name)
+SELECT 'migrate_003_id_sequence.sql' FROM information_schema.TABLES
+WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'IdSequence';
+
+INSERT IGNORE INTO SchemaVersion (name)
+SELECT 'migrate_004_seat_inventory.sql' FROM information_schema.TABLES
+WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'SeatInventory';
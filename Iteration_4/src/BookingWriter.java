@@ -0,0 +1,451 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind persistence for bookings.
+ * - submit() appends the booking to a journal file, forces it to disk and queues it
+ * - a background thread drains the queue and stores bookings with
+ *   CustomerCatalog.saveBookingsToDB, batchSize at a time or every flushMillis
+ * - once a batch is stored its journal entries are marked done; the journal is
+ *   emptied whenever nothing is outstanding, and rewritten with only the outstanding
+ *   entries once COMPACT_AFTER entries have been marked done since the last rewrite
+ * - if the database is unavailable the batch is retried every RETRY_MILLIS; if it rejects
+ *   the batch, the bookings are stored one at a time and those it still rejects are
+ *   moved to the dead-letter file (journal name + ".dead") so the queue keeps moving
+ * - on start, entries not marked done (e.g. after a crash) are queued again; on JVM
+ *   shutdown the queue is flushed once more
+ *
+ * Journal lines: "B <seq> <fields...>" for a booking, "D <seq>" when it is stored.
+ * Fields are tab separated, with \, tab and line breaks escaped. The dead-letter file
+ * holds the "B" line of each rejected booking after a "# <time> <error>" line.
+ */
+final class BookingWriter {
+
+    private static final long RETRY_MILLIS = 5000;
+    private static final long SHUTDOWN_WAIT_MILLIS = 10000;
+    private static final int COMPACT_AFTER = 1000;
+
+    private static final class Entry {
+        final long seq;
+        final CustomerCatalog.PendingBooking booking;
+        final String line; // the "B" line in the journal
+
+        Entry(long seq, CustomerCatalog.PendingBooking booking, String line) {
+            this.seq = seq;
+            this.booking = booking;
+            this.line = line;
+        }
+    }
+
+    private final Path journalPath;
+    private final Path deadLetterPath;
+    private FileChannel journal;
+    private final BlockingQueue<Entry> queue;
+    private final int batchSize;
+    private final long flushMillis;
+    private final Thread thread;
+    private final Thread shutdownHook;
+
+    // Guarded by this: journal writes, seq, the entries not marked done and the count of
+    // "D" lines since the journal was last emptied or rewritten
+    private long nextSeq;
+    private final Map<Long, String> outstanding = new LinkedHashMap<>();
+    private int doneSinceCompaction;
+
+    private volatile boolean running = true;
+
+    private BookingWriter(Path journalPath, int capacity, int batchSize, long flushMillis) throws IOException {
+        this.batchSize = batchSize;
+        this.flushMillis = flushMillis;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.journalPath = journalPath;
+        this.deadLetterPath = Path.of(journalPath + ".dead");
+
+        List<Entry> leftover = replay(journalPath);
+        this.journal = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        for (Entry e : leftover) {
+            nextSeq = Math.max(nextSeq, e.seq + 1);
+        }
+        // Left over entries are already in the journal; they only need to be queued
+        List<Entry> overflow = new ArrayList<>();
+        for (Entry e : leftover) {
+            if (!queue.offer(e)) overflow.add(e);
+        }
+        for (Entry e : leftover) outstanding.put(e.seq, e.line);
+        if (!leftover.isEmpty()) {
+            System.out.println("Replaying " + leftover.size() + " booking(s) from " + journalPath);
+        }
+
+        this.thread = new Thread(() -> run(overflow), "booking-writer");
+        this.shutdownHook = new Thread(this::close, "booking-writer-shutdown");
+    }
+
+    static BookingWriter start(Path journalPath, int capacity, int batchSize, long flushMillis) throws IOException {
+        BookingWriter writer = new BookingWriter(journalPath, capacity, batchSize, flushMillis);
+        writer.thread.start();
+        Runtime.getRuntime().addShutdownHook(writer.shutdownHook);
+        return writer;
+    }
+
+    /**
+     * Journals the booking and queues it for the background writer. Returns once the
+     * journal entry is on disk; blocks while the queue is full.
+     */
+    void submit(CustomerCatalog.PendingBooking booking) throws IOException {
+        if (!running) throw new IllegalStateException("Booking writer is stopped");
+        Entry entry;
+        synchronized (this) {
+            long seq = nextSeq++;
+            entry = new Entry(seq, booking, "B " + seq + "\t" + encode(booking));
+            append(entry.line);
+            outstanding.put(seq, entry.line);
+        }
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // Still in the journal, so it will be replayed on the next start
+            throw new IOException("Interrupted while queueing booking", e);
+        }
+    }
+
+    /** Stops accepting bookings and waits for the queue to be flushed. */
+    void close() {
+        if (!running) return;
+        running = false;
+        try {
+            thread.join(SHUTDOWN_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // already shutting down: we are the hook
+        }
+        synchronized (this) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.out.println("Could not close booking journal: " + e.getMessage());
+            }
+        }
+    }
+
+    // ---------- Background thread ----------
+
+    private void run(List<Entry> overflow) {
+        List<Entry> batch = new ArrayList<>(overflow);
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    Entry first = queue.poll(200, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+                    batch.add(first);
+                }
+                // Size- or time-triggered: wait for a full batch, at most flushMillis
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMillis);
+                while (batch.size() < batchSize && running) {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) break;
+                    Entry next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                queue.drainTo(batch, Math.max(0, batchSize - batch.size()));
+            } catch (InterruptedException e) {
+                running = false;
+            }
+
+            if (flush(batch)) {
+                batch.clear();
+            } else if (running) {
+                sleep(RETRY_MILLIS); // database unavailable: keep the batch and retry
+            } else {
+                return; // shutting down: what is left stays in the journal
+            }
+        }
+    }
+
+    // Stores the batch; false if the database is unavailable, with what is left still in batch
+    private boolean flush(List<Entry> batch) {
+        if (batch.isEmpty()) return true;
+        Exception failure = store(batch);
+        if (failure == null) return true;
+        if (isTransient(failure)) return false;
+
+        // Rejected: one at a time, so only the bookings that cannot be stored are set aside
+        System.out.println("Batch of " + batch.size() + " booking(s) rejected, storing them one at a time: "
+                + failure.getMessage());
+        while (!batch.isEmpty()) {
+            Entry e = batch.get(0);
+            failure = store(Collections.singletonList(e));
+            if (failure != null) {
+                if (isTransient(failure)) return false;
+                deadLetter(e, failure);
+            }
+            batch.remove(0);
+        }
+        return true;
+    }
+
+    // Stores the entries and marks them done; returns the failure, or null
+    private Exception store(List<Entry> entries) {
+        List<CustomerCatalog.PendingBooking> bookings = new ArrayList<>();
+        for (Entry e : entries) bookings.add(e.booking);
+        try {
+            CustomerCatalog.storeBookings(bookings);
+        } catch (SQLException | RuntimeException e) {
+            return e;
+        }
+        markDone(entries);
+        return null;
+    }
+
+    // Failures worth retrying later: no connection, lost connection, timeouts, deadlocks
+    private static boolean isTransient(Exception e) {
+        return e instanceof SQLTransientException
+            || e instanceof SQLRecoverableException
+            || e instanceof SQLNonTransientConnectionException;
+    }
+
+    private void deadLetter(Entry e, Exception failure) {
+        System.out.println("Booking " + e.seq + " rejected by the database, moved to " + deadLetterPath
+                + ": " + failure.getMessage());
+        String text = "# " + Instant.now() + " " + String.valueOf(failure.getMessage()).replace('\n', ' ')
+                    + "\n" + e.line + "\n";
+        try {
+            Files.writeString(deadLetterPath, text, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND,
+                    StandardOpenOption.SYNC);
+        } catch (IOException io) {
+            // Still marked done, so the queue moves on; the booking is in the log above
+            System.out.println("Could not write dead-letter file: " + io.getMessage() + "\n" + e.line);
+        }
+        // Seats counted when the booking was queued would otherwise stay sold
+        CustomerCatalog.abandonBooking(e.booking);
+        markDone(Collections.singletonList(e));
+    }
+
+    private synchronized void markDone(List<Entry> entries) {
+        try {
+            StringBuilder done = new StringBuilder();
+            for (Entry e : entries) {
+                done.append("D ").append(e.seq).append('\n');
+                outstanding.remove(e.seq);
+            }
+            if (outstanding.isEmpty()) {
+                journal.truncate(0); // everything journaled is stored
+                journal.force(true);
+                doneSinceCompaction = 0;
+            } else {
+                write(done.toString());
+                doneSinceCompaction += entries.size();
+                if (doneSinceCompaction >= COMPACT_AFTER) compact();
+            }
+        } catch (IOException e) {
+            // Stored but not marked: a replay finds the reservations and skips them
+            System.out.println("Could not update booking journal: " + e.getMessage());
+        }
+    }
+
+    // Rewrites the journal with only the outstanding entries: written to a temporary file,
+    // forced, then moved over the journal in one step
+    private void compact() throws IOException {
+        Path tmp = Path.of(journalPath + ".tmp");
+        StringBuilder live = new StringBuilder();
+        for (String line : outstanding.values()) live.append(line).append('\n');
+        Files.writeString(tmp, live, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.SYNC);
+        journal.close();
+        try {
+            Files.move(tmp, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            doneSinceCompaction = 0;
+        } finally {
+            // Either the compacted journal or, if the move failed, the old one
+            journal = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------- Journal ----------
+
+    private void append(String line) throws IOException {
+        write(line + "\n");
+    }
+
+    private void write(String text) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (buf.hasRemaining()) journal.write(buf);
+        journal.force(false);
+    }
+
+    // Entries of the journal that were never marked done, in journal order. A last line
+    // without its newline was cut short by a crash while being written: it is dropped from
+    // the file, so lines appended next start on a line of their own
+    private static List<Entry> replay(Path journalPath) throws IOException {
+        Map<Long, Entry> pending = new LinkedHashMap<>();
+        if (!Files.exists(journalPath)) return new ArrayList<>();
+        byte[] bytes = Files.readAllBytes(journalPath);
+        int complete = bytes.length;
+        while (complete > 0 && bytes[complete - 1] != '\n') complete--;
+        if (complete < bytes.length) {
+            System.out.println("Dropping incomplete last line of " + journalPath);
+            try (FileChannel ch = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+                ch.truncate(complete);
+                ch.force(true);
+            }
+        }
+
+        String text = new String(bytes, 0, complete, StandardCharsets.UTF_8);
+        for (String line : text.split("\n")) {
+            try {
+                if (line.startsWith("B ")) {
+                    int tab = line.indexOf('\t');
+                    long seq = Long.parseLong(line.substring(2, tab));
+                    pending.put(seq, new Entry(seq, decode(line.substring(tab + 1)), line));
+                } else if (line.startsWith("D ")) {
+                    pending.remove(Long.parseLong(line.substring(2).trim()));
+                }
+            } catch (RuntimeException e) {
+                System.out.println("Skipping unreadable journal line: " + e.getMessage());
+            }
+        }
+        return new ArrayList<>(pending.values());
+    }
+
+    private static String encode(CustomerCatalog.PendingBooking b) {
+        List<String> fields = new ArrayList<>();
+        fields.add(b.origin);
+        fields.add(b.destination);
+        fields.add(Integer.toString(b.departureDay));
+        fields.add(String.join("|", b.routeIds)); // route ids never contain '|'
+        addPassengers(fields, b.newCustomers);
+        addPassengers(fields, b.travellers);
+        fields.addAll(b.tickets);
+        if (b.seatClass != null) {
+            // Trailing, so entries journaled before seats were counted still decode
+            List<String> dates = new ArrayList<>();
+            for (LocalDate d : b.legDates) dates.add(d.toString());
+            fields.add(b.seatClass.name());
+            fields.add(String.join("|", dates));
+            fields.add(b.seatsHeld ? "1" : "0");
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) sb.append('\t');
+            escape(sb, fields.get(i));
+        }
+        return sb.toString();
+    }
+
+    private static void addPassengers(List<String> fields, List<CustomerCatalog.PendingBooking.Passenger> passengers) {
+        fields.add(Integer.toString(passengers.size()));
+        for (CustomerCatalog.PendingBooking.Passenger p : passengers) {
+            fields.add(p.firstName);
+            fields.add(p.lastName);
+            fields.add(Integer.toString(p.age));
+            fields.add(p.id);
+        }
+    }
+
+    private static CustomerCatalog.PendingBooking decode(String line) {
+        String[] f = line.split("\t", -1);
+        for (int i = 0; i < f.length; i++) f[i] = unescape(f[i]);
+        int[] pos = { 4 };
+        List<CustomerCatalog.PendingBooking.Passenger> newCustomers = passengers(f, pos);
+        List<CustomerCatalog.PendingBooking.Passenger> travellers = passengers(f, pos);
+        List<String> tickets = new ArrayList<>();
+        for (int i = 0; i < travellers.size(); i++) tickets.add(f[pos[0]++]);
+        List<String> routeIds = f[3].isEmpty() ? new ArrayList<>() : Arrays.asList(f[3].split("\\|"));
+        SeatInventory.SeatClass seatClass = null;
+        List<LocalDate> legDates = new ArrayList<>();
+        boolean seatsHeld = false;
+        if (pos[0] + 3 <= f.length) {
+            seatClass = SeatInventory.SeatClass.valueOf(f[pos[0]]);
+            for (String d : f[pos[0] + 1].split("\\|")) legDates.add(LocalDate.parse(d));
+            seatsHeld = f[pos[0] + 2].equals("1");
+        }
+        return new CustomerCatalog.PendingBooking(f[0], f[1], departureDay(f[2]), routeIds,
+                newCustomers, travellers, tickets, true, seatClass, legDates, seatsHeld);
+    }
+
+    // Entries journaled before trips stored a departure day hold the rendered path here
+    private static int departureDay(String field) {
+        try {
+            return Integer.parseInt(field);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static List<CustomerCatalog.PendingBooking.Passenger> passengers(String[] f, int[] pos) {
+        int count = Integer.parseInt(f[pos[0]++]);
+        List<CustomerCatalog.PendingBooking.Passenger> out = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            out.add(new CustomerCatalog.PendingBooking.Passenger(
+                    f[pos[0]], f[pos[0] + 1], Integer.parseInt(f[pos[0] + 2]), f[pos[0] + 3]));
+            pos[0] += 4;
+        }
+        return out;
+    }
+
+    private static void escape(StringBuilder sb, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                default: sb.append(c);
+            }
+        }
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('\\') < 0) return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char n = s.charAt(++i);
+                sb.append(n == 't' ? '\t' : n == 'n' ? '\n' : n == 'r' ? '\r' : n);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
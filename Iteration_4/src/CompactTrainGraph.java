@@ -0,0 +1,755 @@
+// CompactTrainGraph.java
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Immutable, integer-indexed copy of a TrainGraph used by the search algorithms.
+ * - Cities are interned to dense ids 0..cityCount()-1
+ * - Outgoing edges are stored CSR-style: the edges leaving city c are the
+ *   indexes [offsets[c], offsets[c+1]), sorted by arrival city id
+ * - A reverse index lists, for every city, the ids of its incoming edges
+ *   sorted by departure city id
+ * - Edge attributes live in parallel primitive arrays, so a search step only
+ *   reads ints and never hashes a city name or boxes a value
+ *
+ * The original TrainConnection of every edge is kept in connections[] so that
+ * results can still be returned as PathResult.
+ */
+final class CompactTrainGraph {
+
+    static final int MINUTES_PER_DAY = 1440;
+
+    // City interning
+    private final String[] cityNames;
+    private final Map<String, Integer> cityIds;
+
+    // CSR adjacency
+    private final int[] offsets;          // length cityCount() + 1
+    private final int[] sources;          // departure city id of each edge
+    private final int[] targets;          // arrival city id of each edge
+
+    // Reverse adjacency: incoming edge ids of city c are inEdges[inOffsets[c] .. inOffsets[c+1])
+    private final int[] inOffsets;
+    private final int[] inEdges;
+
+    // Edge attributes (indexed by edge id)
+    private final int[] departureMinute;  // minute of day, 0..1439
+    private final int[] durationMinutes;
+    private final int[] dayMask;          // bit (DayOfWeek.getValue() - 1) set when the train runs that day
+    private final int[] firstClassRate;
+    private final int[] secondClassRate;
+    private final TrainConnection[] connections;
+
+    // Edge ids ordered by departure minute of day (the connection-scan timetable)
+    private final int[] byDeparture;
+
+    // Per destination: minimum number of edges from every city to it, computed on first use
+    static final byte UNREACHABLE = Byte.MAX_VALUE;
+    private final Map<Integer, byte[]> hopsToCache = new ConcurrentHashMap<>();
+
+    CompactTrainGraph(List<TrainConnection> source) {
+        this(source, null);
+    }
+
+    /**
+     * Builds the compact graph, keeping the city ids of {@code previous} (if not null)
+     * so that tables indexed by city id stay valid; new cities get the next free ids.
+     */
+    CompactTrainGraph(List<TrainConnection> source, CompactTrainGraph previous) {
+        // Intern cities in first-seen order
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        if (previous != null) {
+            for (String city : previous.cityNames) intern(city, ids, names);
+        }
+        for (TrainConnection tc : source) {
+            intern(tc.departureCity, ids, names);
+            intern(tc.arrivalCity, ids, names);
+        }
+        this.cityIds = ids;
+        this.cityNames = names.toArray(new String[0]);
+
+        int n = cityNames.length;
+        int m = source.size();
+
+        // Order edges by (departure city, arrival city), keeping input order for ties
+        Integer[] order = new Integer[m];
+        for (int i = 0; i < m; i++) order[i] = i;
+        Arrays.sort(order, Comparator
+                .comparingInt((Integer i) -> ids.get(source.get(i).departureCity))
+                .thenComparingInt(i -> ids.get(source.get(i).arrivalCity)));
+
+        this.offsets = new int[n + 1];
+        this.sources = new int[m];
+        this.targets = new int[m];
+        this.departureMinute = new int[m];
+        this.durationMinutes = new int[m];
+        this.dayMask = new int[m];
+        this.firstClassRate = new int[m];
+        this.secondClassRate = new int[m];
+        this.connections = new TrainConnection[m];
+
+        for (int e = 0; e < m; e++) {
+            TrainConnection tc = source.get(order[e]);
+            sources[e] = ids.get(tc.departureCity);
+            offsets[sources[e] + 1]++;
+            targets[e] = ids.get(tc.arrivalCity);
+            departureMinute[e] = tc.departureMinute();
+            durationMinutes[e] = tc.durationMinutes();
+            dayMask[e] = tc.dayMask();
+            firstClassRate[e] = tc.firstClassRate;
+            secondClassRate[e] = tc.secondClassRate;
+            connections[e] = tc;
+        }
+        for (int c = 0; c < n; c++) offsets[c + 1] += offsets[c];
+
+        // Stable counting sort by arrival city; edges are already ordered by departure city
+        this.inOffsets = new int[n + 1];
+        this.inEdges = new int[m];
+        for (int e = 0; e < m; e++) inOffsets[targets[e] + 1]++;
+        for (int c = 0; c < n; c++) inOffsets[c + 1] += inOffsets[c];
+        int[] fill = Arrays.copyOf(inOffsets, n);
+        for (int e = 0; e < m; e++) inEdges[fill[targets[e]]++] = e;
+
+        Integer[] scan = new Integer[m];
+        for (int e = 0; e < m; e++) scan[e] = e;
+        Arrays.sort(scan, Comparator.comparingInt((Integer e) -> departureMinute[e]));
+        this.byDeparture = new int[m];
+        for (int i = 0; i < m; i++) byDeparture[i] = scan[i];
+    }
+
+    private static void intern(String city, Map<String, Integer> ids, List<String> names) {
+        if (!ids.containsKey(city)) {
+            ids.put(city, names.size());
+            names.add(city);
+        }
+    }
+
+    // ---------- Accessors ----------
+
+    int cityCount() { return cityNames.length; }
+
+    int edgeCount() { return targets.length; }
+
+    /** Dense id of a city, or -1 if the city is unknown. */
+    int cityId(String city) {
+        Integer id = cityIds.get(city);
+        return (id == null) ? -1 : id;
+    }
+
+    String cityName(int id) { return cityNames[id]; }
+
+    int firstEdge(int city) { return offsets[city]; }
+
+    int endEdge(int city) { return offsets[city + 1]; }
+
+    int source(int edge) { return sources[edge]; }
+
+    int target(int edge) { return targets[edge]; }
+
+    int departureMinute(int edge) { return departureMinute[edge]; }
+
+    int durationMinutes(int edge) { return durationMinutes[edge]; }
+
+    int dayMask(int edge) { return dayMask[edge]; }
+
+    int firstClassRate(int edge) { return firstClassRate[edge]; }
+
+    int secondClassRate(int edge) { return secondClassRate[edge]; }
+
+    TrainConnection connection(int edge) { return connections[edge]; }
+
+    // ---------- Reachability ----------
+
+    /**
+     * Minimum number of edges needed to reach {@code to} from every city (ignoring
+     * filters and times), or UNREACHABLE. Computed once per destination with a BFS over
+     * the reverse index and cached; a search can skip any city whose entry is larger
+     * than its remaining edge budget.
+     */
+    byte[] hopsTo(int to) {
+        return hopsToCache.computeIfAbsent(to, this::computeHopsTo);
+    }
+
+    private byte[] computeHopsTo(int to) {
+        byte[] hops = new byte[cityCount()];
+        Arrays.fill(hops, UNREACHABLE);
+        int[] queue = new int[cityCount()];
+        int head = 0, tail = 0;
+        hops[to] = 0;
+        queue[tail++] = to;
+        while (head < tail) {
+            int c = queue[head++];
+            if (hops[c] + 1 >= UNREACHABLE) break;
+            for (int i = inOffsets[c], end = inOffsets[c + 1]; i < end; i++) {
+                int prev = sources[inEdges[i]];
+                if (hops[prev] == UNREACHABLE) {
+                    hops[prev] = (byte) (hops[c] + 1);
+                    queue[tail++] = prev;
+                }
+            }
+        }
+        return hops;
+    }
+
+    // ---------- Path enumeration ----------
+
+    /**
+     * All simple paths from -> to with at most maxEdges edges whose every edge
+     * satisfies edgeFilter. Only paths that end at {@code to} are materialised, and a
+     * branch is cut as soon as hopsTo(to) shows it cannot reach {@code to} in time.
+     */
+    List<TrainGraph.PathResult> paths(int from, int to, int maxEdges, Predicate<TrainConnection> edgeFilter) {
+        List<TrainGraph.PathResult> out = new ArrayList<>();
+        if (from < 0 || to < 0 || from == to || maxEdges <= 0) return out;
+
+        boolean[] visited = new boolean[cityCount()];
+        int[] path = new int[maxEdges];
+        visited[from] = true;
+        dfs(from, to, 0, maxEdges, hopsTo(to), visited, path, edgeFilter, out);
+        return out;
+    }
+
+    private void dfs(int current,
+                     int to,
+                     int depth,
+                     int maxEdges,
+                     byte[] hops,
+                     boolean[] visited,
+                     int[] path,
+                     Predicate<TrainConnection> edgeFilter,
+                     List<TrainGraph.PathResult> out) {
+        int remaining = maxEdges - depth - 1; // edges left after taking this one
+        for (int e = offsets[current], end = offsets[current + 1]; e < end; e++) {
+            int next = targets[e];
+            if (visited[next]) continue;
+            if (next != to && hops[next] > remaining) continue;
+            if (!edgeFilter.test(connections[e])) continue;
+
+            path[depth] = e;
+            if (next == to) {
+                out.add(toPathResult(path, depth + 1));
+            } else {
+                visited[next] = true;
+                dfs(next, to, depth + 1, maxEdges, hops, visited, path, edgeFilter, out);
+                visited[next] = false;
+            }
+        }
+    }
+
+    /**
+     * All simple paths (at most maxEdges edges, every edge accepted by edgeFilter) that
+     * start at {@code from}, grouped by destination city name. Only touches per-call
+     * state, so several sources can be expanded concurrently.
+     */
+    Map<String, List<TrainGraph.PathResult>> pathsFrom(int from, int maxEdges, Predicate<TrainConnection> edgeFilter) {
+        Map<String, List<TrainGraph.PathResult>> out = new HashMap<>();
+        if (from < 0 || maxEdges <= 0) return out;
+
+        boolean[] visited = new boolean[cityCount()];
+        int[] path = new int[maxEdges];
+        visited[from] = true;
+        dfsAll(from, 0, maxEdges, visited, path, edgeFilter, out);
+        return out;
+    }
+
+    private void dfsAll(int current,
+                        int depth,
+                        int maxEdges,
+                        boolean[] visited,
+                        int[] path,
+                        Predicate<TrainConnection> edgeFilter,
+                        Map<String, List<TrainGraph.PathResult>> out) {
+        for (int e = offsets[current], end = offsets[current + 1]; e < end; e++) {
+            int next = targets[e];
+            if (visited[next]) continue;
+            if (!edgeFilter.test(connections[e])) continue;
+
+            path[depth] = e;
+            out.computeIfAbsent(cityNames[next], k -> new ArrayList<>()).add(toPathResult(path, depth + 1));
+            if (depth + 1 < maxEdges) {
+                visited[next] = true;
+                dfsAll(next, depth + 1, maxEdges, visited, path, edgeFilter, out);
+                visited[next] = false;
+            }
+        }
+    }
+
+    // ---------- Lazy enumeration ----------
+
+    /**
+     * Iterator over the same paths as pathsFrom / paths, produced one at a time by an
+     * explicit-stack DFS. Sources firstSource..lastSource are expanded in turn;
+     * {@code to} = -1 yields paths to every destination, otherwise only paths ending at
+     * {@code to}. Only the current path is held in memory.
+     */
+    Iterator<TrainGraph.PathResult> pathIterator(int firstSource, int lastSource, int to, int maxEdges,
+                                                 Predicate<TrainConnection> edgeFilter) {
+        return new PathIterator(firstSource, lastSource, to, maxEdges, edgeFilter);
+    }
+
+    private final class PathIterator implements Iterator<TrainGraph.PathResult> {
+        private final int to;
+        private final int maxEdges;
+        private final Predicate<TrainConnection> edgeFilter;
+        private final byte[] hops;
+        private final int lastSource;
+        private int nextSource;
+
+        private final boolean[] visited = new boolean[cityCount()];
+        private final int[] path;    // edge taken at each depth
+        private final int[] cursor;  // next edge to try at each depth
+        private final int[] limit;   // end of the edge range at each depth
+        private int origin = -1;
+        private int depth = -1;      // -1: no source in progress
+
+        private TrainGraph.PathResult next;
+
+        PathIterator(int firstSource, int lastSource, int to, int maxEdges, Predicate<TrainConnection> edgeFilter) {
+            this.nextSource = Math.max(0, firstSource);
+            this.lastSource = lastSource;
+            this.to = to;
+            this.maxEdges = maxEdges;
+            this.edgeFilter = edgeFilter;
+            this.hops = (to >= 0) ? hopsTo(to) : null;
+            this.path = new int[Math.max(1, maxEdges)];
+            this.cursor = new int[Math.max(1, maxEdges)];
+            this.limit = new int[Math.max(1, maxEdges)];
+            if (maxEdges <= 0) this.nextSource = lastSource + 1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) next = advance();
+            return next != null;
+        }
+
+        @Override
+        public TrainGraph.PathResult next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            TrainGraph.PathResult p = next;
+            next = null;
+            return p;
+        }
+
+        private TrainGraph.PathResult advance() {
+            while (true) {
+                if (depth < 0) {
+                    if (nextSource > lastSource) return null;
+                    origin = nextSource++;
+                    if (origin == to) continue;
+                    visited[origin] = true;
+                    depth = 0;
+                    cursor[0] = offsets[origin];
+                    limit[0] = offsets[origin + 1];
+                }
+
+                if (cursor[depth] == limit[depth]) {
+                    // This level is exhausted: backtrack
+                    if (depth == 0) {
+                        visited[origin] = false;
+                    } else {
+                        visited[targets[path[depth - 1]]] = false;
+                    }
+                    depth--;
+                    continue;
+                }
+
+                int e = cursor[depth]++;
+                int city = targets[e];
+                int remaining = maxEdges - depth - 1;
+                if (visited[city]) continue;
+                if (to >= 0 && city != to && hops[city] > remaining) continue;
+                if (!edgeFilter.test(connections[e])) continue;
+
+                path[depth] = e;
+                int length = depth + 1;
+                if (remaining > 0 && city != to) {
+                    visited[city] = true;
+                    depth++;
+                    cursor[depth] = offsets[city];
+                    limit[depth] = offsets[city + 1];
+                }
+                if (to < 0 || city == to) return toPathResult(path, length);
+            }
+        }
+    }
+
+    /** Builds the PathResult for the first {@code length} edges of an edge-id path. */
+    TrainGraph.PathResult toPathResult(int[] path, int length) {
+        TrainConnection[] edges = new TrainConnection[length];
+        for (int i = 0; i < length; i++) edges[i] = connections[path[i]];
+        return new TrainGraph.PathResult(
+                cityNames[sources[path[0]]], cityNames[targets[path[length - 1]]], Arrays.asList(edges));
+    }
+
+    // ---------- Bidirectional search (at most 3 edges) ----------
+
+    /**
+     * Same result as paths(from, to, 3, edgeFilter), computed by meeting in the middle:
+     * one hop forward from {@code from} (cities a), one hop backward from {@code to}
+     * (cities b), joined by the direct edges a -> b. Each (a, b) pair is looked up once
+     * with a binary search in the forward CSR, so the work grows with
+     * out-degree(from) * in-degree(to) rather than out-degree^3.
+     */
+    List<TrainGraph.PathResult> pathsBidirectional(int from, int to, Predicate<TrainConnection> edgeFilter) {
+        List<TrainGraph.PathResult> out = new ArrayList<>();
+        if (from < 0 || to < 0 || from == to) return out;
+
+        // Backward hop: incoming edges of `to` that pass the filter, grouped by departure city b
+        int inStart = inOffsets[to], inEnd = inOffsets[to + 1];
+        int[] lastHop = new int[inEnd - inStart];
+        int lastHopCount = 0;
+        for (int i = inStart; i < inEnd; i++) {
+            int e = inEdges[i];
+            int b = sources[e];
+            if (b != from && b != to && edgeFilter.test(connections[e])) lastHop[lastHopCount++] = e;
+        }
+
+        int[] path = new int[3];
+        int[] firstHop = new int[offsets[from + 1] - offsets[from]];
+
+        // Forward hop: outgoing edges of `from`, one group per arrival city a
+        for (int g = offsets[from], end = offsets[from + 1]; g < end; ) {
+            int a = targets[g];
+            int groupEnd = g;
+            while (groupEnd < end && targets[groupEnd] == a) groupEnd++;
+
+            int firstHopCount = 0;
+            for (int e = g; e < groupEnd; e++) {
+                if (edgeFilter.test(connections[e])) firstHop[firstHopCount++] = e;
+            }
+            g = groupEnd;
+            if (firstHopCount == 0 || a == from) continue;
+
+            if (a == to) {
+                // 1 edge: from -> to
+                for (int i = 0; i < firstHopCount; i++) {
+                    path[0] = firstHop[i];
+                    out.add(toPathResult(path, 1));
+                }
+                continue;
+            }
+
+            // 2 edges: from -> a -> to
+            for (int i = 0; i < lastHopCount; i++) {
+                if (sources[lastHop[i]] != a) continue;
+                for (int j = 0; j < firstHopCount; j++) {
+                    path[0] = firstHop[j];
+                    path[1] = lastHop[i];
+                    out.add(toPathResult(path, 2));
+                }
+            }
+
+            // 3 edges: from -> a -> b -> to, joined on the middle edges a -> b
+            for (int i = 0; i < lastHopCount; ) {
+                int b = sources[lastHop[i]];
+                int bEnd = i;
+                while (bEnd < lastHopCount && sources[lastHop[bEnd]] == b) bEnd++;
+
+                if (b != a) {
+                    for (int mid = lowerBound(a, b), midEnd = lowerBound(a, b + 1); mid < midEnd; mid++) {
+                        if (!edgeFilter.test(connections[mid])) continue;
+                        for (int j = 0; j < firstHopCount; j++) {
+                            for (int k = i; k < bEnd; k++) {
+                                path[0] = firstHop[j];
+                                path[1] = mid;
+                                path[2] = lastHop[k];
+                                out.add(toPathResult(path, 3));
+                            }
+                        }
+                    }
+                }
+                i = bEnd;
+            }
+        }
+        return out;
+    }
+
+    /** First edge of city {@code city} whose arrival city id is >= target. */
+    private int lowerBound(int city, int target) {
+        int lo = offsets[city], hi = offsets[city + 1];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (targets[mid] < target) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // ---------- Top-K paths ----------
+
+    /**
+     * The k best simple paths from -> to (at most maxEdges edges) by the given order,
+     * best first, among paths accepted by pathFilter; paths of equal cost are ranked by
+     * duration. Only a bounded heap of k paths is kept; because duration and prices only
+     * grow along a path, a branch whose partial cost is already worse than the current
+     * k-th best is cut. A branch of equal cost is still followed, as it may end quicker.
+     */
+    List<TrainGraph.PathResult> topK(int from, int to, int maxEdges, int k, TrainGraph.PathOrder order,
+                                     Predicate<TrainConnection> edgeFilter,
+                                     Predicate<TrainGraph.PathResult> pathFilter) {
+        List<TrainGraph.PathResult> out = new ArrayList<>();
+        if (from < 0 || to < 0 || from == to || maxEdges <= 0 || k <= 0) return out;
+
+        PriorityQueue<Ranked> heap = new PriorityQueue<>(k, Ranked.ORDER.reversed()); // worst on top
+        boolean[] visited = new boolean[cityCount()];
+        int[] path = new int[maxEdges];
+        visited[from] = true;
+        topKDfs(from, to, 0, maxEdges, hopsTo(to), 0, 0, 0, 0, k, order, visited, path, edgeFilter, pathFilter, heap);
+
+        List<Ranked> ranked = new ArrayList<>(heap);
+        ranked.sort(Ranked.ORDER);
+        for (Ranked r : ranked) out.add(r.path);
+        return out;
+    }
+
+    private void topKDfs(int current,
+                         int to,
+                         int depth,
+                         int maxEdges,
+                         byte[] hops,
+                         long startAbs,
+                         long currentAbs,
+                         int first,
+                         int second,
+                         int k,
+                         TrainGraph.PathOrder order,
+                         boolean[] visited,
+                         int[] path,
+                         Predicate<TrainConnection> edgeFilter,
+                         Predicate<TrainGraph.PathResult> pathFilter,
+                         PriorityQueue<Ranked> heap) {
+        int remaining = maxEdges - depth - 1; // edges left after taking this one
+        for (int e = offsets[current], end = offsets[current + 1]; e < end; e++) {
+            int next = targets[e];
+            if (visited[next]) continue;
+            if (next != to && hops[next] > remaining) continue;
+
+            long start = (depth == 0) ? departureMinute[e] : startAbs;
+            long depAbs = (depth == 0) ? start : alignToNextOrSame(currentAbs, departureMinute[e]);
+            long arrAbs = depAbs + durationMinutes[e];
+            int f = first + firstClassRate[e];
+            int sc = second + secondClassRate[e];
+
+            long cost;
+            switch (order) {
+                case FIRST_CLASS_PRICE:  cost = f; break;
+                case SECOND_CLASS_PRICE: cost = sc; break;
+                default:                 cost = arrAbs - start; break;
+            }
+            if (heap.size() == k && cost > heap.peek().cost) continue; // cannot beat the k-th best
+            if (!edgeFilter.test(connections[e])) continue;
+
+            path[depth] = e;
+            if (next == to) {
+                long duration = arrAbs - start;
+                if (heap.size() == k && Ranked.compare(cost, duration, heap.peek()) >= 0) continue;
+                TrainGraph.PathResult p = toPathResult(path, depth + 1);
+                if (!pathFilter.test(p)) continue;
+                heap.add(new Ranked(cost, duration, p));
+                if (heap.size() > k) heap.poll();
+            } else {
+                visited[next] = true;
+                topKDfs(next, to, depth + 1, maxEdges, hops, start, arrAbs, f, sc, k, order,
+                        visited, path, edgeFilter, pathFilter, heap);
+                visited[next] = false;
+            }
+        }
+    }
+
+    private static final class Ranked {
+        // Best first: by cost, then by duration
+        static final Comparator<Ranked> ORDER = (a, b) -> compare(a.cost, a.duration, b);
+
+        final long cost;
+        final long duration; // minutes from the first departure to the last arrival
+        final TrainGraph.PathResult path;
+
+        Ranked(long cost, long duration, TrainGraph.PathResult path) {
+            this.cost = cost;
+            this.duration = duration;
+            this.path = path;
+        }
+
+        static int compare(long cost, long duration, Ranked r) {
+            int c = Long.compare(cost, r.cost);
+            return (c != 0) ? c : Long.compare(duration, r.duration);
+        }
+    }
+
+    // ---------- Pareto-optimal paths ----------
+
+    /**
+     * Simple paths from -> to (at most maxEdges edges) that are Pareto-optimal over
+     * (total duration, first-class price, second-class price, number of trains).
+     * Only paths accepted by pathFilter take part in the comparison.
+     *
+     * Every criterion can only grow when a path is extended, so a partial path that is
+     * already matched or beaten on all four by an itinerary found earlier is pruned.
+     * When several itineraries have identical criteria only the first one is kept.
+     */
+    List<TrainGraph.PathResult> paretoPaths(int from, int to, int maxEdges,
+                                            Predicate<TrainConnection> edgeFilter,
+                                            Predicate<TrainGraph.PathResult> pathFilter) {
+        ParetoFront front = new ParetoFront();
+        if (from < 0 || to < 0 || from == to || maxEdges <= 0) return front.paths;
+
+        boolean[] visited = new boolean[cityCount()];
+        int[] path = new int[maxEdges];
+        visited[from] = true;
+        paretoDfs(from, to, 0, maxEdges, hopsTo(to), 0, 0, 0, 0, visited, path, edgeFilter, pathFilter, front);
+        return front.paths;
+    }
+
+    private void paretoDfs(int current,
+                           int to,
+                           int depth,
+                           int maxEdges,
+                           byte[] hops,
+                           long startAbs,
+                           long currentAbs,
+                           int first,
+                           int second,
+                           boolean[] visited,
+                           int[] path,
+                           Predicate<TrainConnection> edgeFilter,
+                           Predicate<TrainGraph.PathResult> pathFilter,
+                           ParetoFront front) {
+        int remaining = maxEdges - depth - 1; // edges left after taking this one
+        for (int e = offsets[current], end = offsets[current + 1]; e < end; e++) {
+            int next = targets[e];
+            if (visited[next]) continue;
+            if (next != to && hops[next] > remaining) continue;
+
+            // Same timeline as PathResult: wait for the next departure at or after currentAbs
+            long start = (depth == 0) ? departureMinute[e] : startAbs;
+            long depAbs = (depth == 0) ? start : alignToNextOrSame(currentAbs, departureMinute[e]);
+            long arrAbs = depAbs + durationMinutes[e];
+            long elapsed = arrAbs - start;
+            int f = first + firstClassRate[e];
+            int sc = second + secondClassRate[e];
+            int legs = depth + 1;
+
+            if (next != to && front.dominates(elapsed, f, sc, legs + 1)) continue;
+            if (next == to && front.dominates(elapsed, f, sc, legs)) continue;
+            if (!edgeFilter.test(connections[e])) continue;
+
+            path[depth] = e;
+            if (next == to) {
+                TrainGraph.PathResult p = toPathResult(path, legs);
+                if (pathFilter.test(p)) front.add(elapsed, f, sc, legs, p);
+            } else {
+                visited[next] = true;
+                paretoDfs(next, to, legs, maxEdges, hops, start, arrAbs, f, sc,
+                        visited, path, edgeFilter, pathFilter, front);
+                visited[next] = false;
+            }
+        }
+    }
+
+    /** Current set of mutually non-dominated itineraries, one criteria vector per path. */
+    private static final class ParetoFront {
+        final List<long[]> labels = new ArrayList<>();
+        final List<TrainGraph.PathResult> paths = new ArrayList<>();
+
+        /** True if some itinerary is at least as good as the given criteria on every one of them. */
+        boolean dominates(long duration, int first, int second, int legs) {
+            for (long[] l : labels) {
+                if (l[0] <= duration && l[1] <= first && l[2] <= second && l[3] <= legs) return true;
+            }
+            return false;
+        }
+
+        void add(long duration, int first, int second, int legs, TrainGraph.PathResult p) {
+            for (int i = labels.size() - 1; i >= 0; i--) {
+                long[] l = labels.get(i);
+                if (duration <= l[0] && first <= l[1] && second <= l[2] && legs <= l[3]) {
+                    labels.remove(i);
+                    paths.remove(i);
+                }
+            }
+            labels.add(new long[] { duration, first, second, legs });
+            paths.add(p);
+        }
+    }
+
+    static long alignToNextOrSame(long currentAbs, int targetMinOfDay) {
+        long day = currentAbs / MINUTES_PER_DAY;
+        long candidate = day * MINUTES_PER_DAY + targetMinOfDay;
+        while (candidate < currentAbs) candidate += MINUTES_PER_DAY;
+        return candidate;
+    }
+
+    // ---------- Earliest arrival (Connection Scan Algorithm) ----------
+
+    /**
+     * Earliest arrival at {@code to} when leaving {@code from} on day {@code startDay}
+     * (0 = Monday) at or after minute {@code startMinute}, using at most maxLegs trains.
+     *
+     * Times are absolute minutes counted from 00:00 of startDay. The weekly timetable is
+     * scanned day after day in departure order for up to horizonDays days; each
+     * connection is relaxed once per leg count, so a query costs O(connections * maxLegs)
+     * per scanned day. Returns null when the destination is not reachable in the horizon.
+     */
+    TrainGraph.PathResult earliestArrival(int from, int to, int startDay, int startMinute,
+                                          int maxLegs, int horizonDays,
+                                          Predicate<TrainConnection> edgeFilter) {
+        if (from < 0 || to < 0 || from == to || maxLegs <= 0) return null;
+
+        final long INF = Long.MAX_VALUE;
+        int n = cityCount();
+
+        // arrival[k][c]: earliest arrival at c using at most k trains
+        long[][] arrival = new long[maxLegs + 1][n];
+        int[][] parentEdge = new int[maxLegs + 1][n];
+        long[][] parentDeparture = new long[maxLegs + 1][n];
+        for (int k = 0; k <= maxLegs; k++) {
+            Arrays.fill(arrival[k], INF);
+            Arrays.fill(parentEdge[k], -1);
+            arrival[k][from] = startMinute;
+        }
+
+        scan:
+        for (int day = 0; day < horizonDays; day++) {
+            int dayBit = 1 << ((startDay + day) % 7);
+            long dayStart = (long) day * MINUTES_PER_DAY;
+
+            for (int e : byDeparture) {
+                long dep = dayStart + departureMinute[e];
+                if (dep < startMinute) continue;
+                if (dep >= arrival[maxLegs][to]) break scan; // nothing later can improve the answer
+                if ((dayMask[e] & dayBit) == 0) continue;
+
+                int s = sources[e];
+                int t = targets[e];
+                long arr = dep + durationMinutes[e];
+                if (arrival[maxLegs - 1][s] > dep || arr >= arrival[maxLegs][t]) continue;
+                if (!edgeFilter.test(connections[e])) continue;
+
+                // Highest leg count first so this connection is used at most once per level
+                for (int k = maxLegs; k >= 1; k--) {
+                    if (arrival[k - 1][s] > dep || arr >= arrival[k][t]) continue;
+                    arrival[k][t] = arr;
+                    parentEdge[k][t] = e;
+                    parentDeparture[k][t] = dep;
+                }
+            }
+        }
+        if (arrival[maxLegs][to] == INF) return null;
+
+        // Walk the parent pointers back to the origin
+        ArrayDeque<TrainConnection> legs = new ArrayDeque<>();
+        int city = to;
+        long firstDeparture = startMinute;
+        for (int k = maxLegs; city != from; k--) {
+            int e = parentEdge[k][city];
+            legs.addFirst(connections[e]);
+            firstDeparture = parentDeparture[k][city];
+            city = sources[e];
+        }
+        return new TrainGraph.PathResult(cityNames[from], cityNames[to], new ArrayList<>(legs),
+                Duration.ofMinutes(arrival[maxLegs][to] - firstDeparture));
+    }
+}
@@ -1,11 +1,69 @@
 import java.util.*;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Types;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CustomerCatalog{
-    private  static ArrayList<Customer> customers = new ArrayList<>();
+    // Customers by identifier, in the order they were added. Identifiers are unique in practice,
+    // so a lookup by (last name, identifier) is one hash lookup plus a name check on a one-element
+    // list; a second map keyed by both would only double the entries kept per customer.
+    // Keys are the identifier at the time the customer was added.
+    private static final ConcurrentHashMap<String, List<Customer>> customersById = new ConcurrentHashMap<>();
+
+    // Seats sold on every train, shared by all booking sessions
+    private static final SeatInventory seats = new SeatInventory(
+            Integer.parseInt(DBManager.setting("booking.seats.first", "50")),
+            Integer.parseInt(DBManager.setting("booking.seats.second", "200")));
+
+    // Background writer for bookings, null unless write-behind is enabled
+    private static volatile BookingWriter writeBehind;
+
+    // Pages of stored trips of recently viewed customers (see tripHistory), by historyKey,
+    // first trip id and page size, least recently used first; cachedTrips counts their trips.
+    // Both are only used while holding historyPages.
+    private static final int HISTORY_PAGE_SIZE = Integer.parseInt(DBManager.setting("db.history.pageSize", "200"));
+    private static final int HISTORY_CACHE_TRIPS = Integer.parseInt(DBManager.setting("db.history.cacheTrips", "10000"));
+    private static final LinkedHashMap<String, List<StoredTrip>> historyPages = new LinkedHashMap<>(16, 0.75f, true);
+    private static int cachedTrips = 0;
+
+    // Results of findCustomerByIdFromDB by identifier, null customer for "not in the database".
+    // LRU bounded to db.customerCache.size entries; found customers are kept for
+    // db.customerCache.ttlMillis, unknown ids for db.customerCache.negativeTtlMillis.
+    private static final int CUSTOMER_CACHE_SIZE = Integer.parseInt(DBManager.setting("db.customerCache.size", "10000"));
+    private static final long CUSTOMER_TTL_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Long.parseLong(DBManager.setting("db.customerCache.ttlMillis", "60000")));
+    private static final long UNKNOWN_ID_TTL_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Long.parseLong(DBManager.setting("db.customerCache.negativeTtlMillis", "5000")));
+    private static final Map<String, CachedCustomer> customerCache = Collections.synchronizedMap(
+            new LinkedHashMap<String, CachedCustomer>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedCustomer> eldest) {
+                    return size() > CUSTOMER_CACHE_SIZE;
+                }
+            });
+    private static final AtomicLong customerCacheHits = new AtomicLong();
+    private static final AtomicLong customerCacheMisses = new AtomicLong();
+
+    private static final class CachedCustomer {
+        final Customer customer; // null if the id is not in the database
+        final long expiresAt;
+
+        CachedCustomer(Customer customer, long ttlNanos) {
+            this.customer = customer;
+            this.expiresAt = System.nanoTime() + ttlNanos;
+        }
+    }
 
     public CustomerCatalog(){
 
@@ -19,16 +77,53 @@ public class CustomerCatalog{
         return trip;
     }
 
+    /**
+     * Books the trip for the clients if every train of it has a free seat in the class for
+     * each of them, taking those seats; the trip is tied to the day of {@code date}.
+     * Returns null, booking nothing, if a train is full. Throws IllegalStateException,
+     * also booking nothing, if no trip or reservation id could be allocated, and
+     * IllegalArgumentException if a train does not run on the date it would be taken.
+     * The seats are counted in this instance only; saveBooking counts them in the
+     * database, and cancelTrip gives them back if that fails.
+     */
+    public Trip bookTrip(ArrayList<Customer> clients, TrainGraph.PathResult pathResult,
+                         LocalDate date, SeatInventory.SeatClass seatClass){
+        if (!pathResult.runsOn(date)) {
+            throw new IllegalArgumentException("A train of this trip does not run when leaving on " + date);
+        }
+        // Ids first: if they cannot be allocated no seat has been taken yet
+        Trip trip = clients.get(0).bookTrip(clients, pathResult.withDepartureDay(date.getDayOfWeek()));
+        trip.setSeats(date, seatClass);
+        if (!seats.reserve(pathResult, date, seatClass, clients.size())) return null;
+        for (Customer c : clients) c.addTrip(trip);
+        return trip;
+    }
+
+    /** Undoes bookTrip(clients, pathResult, date, seatClass): gives the seats back and drops the trip. */
+    public void cancelTrip(ArrayList<Customer> clients, Trip trip, TrainGraph.PathResult pathResult){
+        seats.release(pathResult, trip.getTravelDate(), trip.getSeatClass(), clients.size());
+        for (Customer c : clients) c.removeTrip(trip);
+    }
+
+    /** Free seats in the class on the fullest train of the trip leaving on date. */
+    public int seatsLeft(TrainGraph.PathResult pathResult, LocalDate date, SeatInventory.SeatClass seatClass){
+        return seats.seatsLeftInDB(pathResult, date, seatClass);
+    }
+
+    /** Booking counts and throughput of the seat inventory, for logging. */
+    public static String bookingStats(){
+        return seats.stats();
+    }
+
     public Customer add(String firstName, String lastName, String id, int age){
         CustomerCatalog.Customer newCustomer = new Customer(firstName, lastName, id, age);
-        customers.add(newCustomer);
+        customersById.computeIfAbsent(id, k -> new CopyOnWriteArrayList<>()).add(newCustomer);
         return newCustomer;
     }
 
     public Customer find(String id, String firstName, String lastName){
-        for (CustomerCatalog.Customer customer: customers){
-            if (customer.getId().equals(id) &&
-                customer.getFirstName().equals(firstName) &&
+        for (CustomerCatalog.Customer customer: customersWithId(id)){
+            if (customer.getFirstName().equals(firstName) &&
                 customer.getLastName().equals(lastName)){
                 return customer;
             }
@@ -36,12 +131,48 @@ public class CustomerCatalog{
         return null;
     }
 
+    /** First customer added with this last name and identifier, or null. */
+    public Customer findByLastNameAndId(String lastName, String id){
+        for (CustomerCatalog.Customer customer: customersWithId(id)){
+            if (customer.getLastName().equals(lastName)){
+                return customer;
+            }
+        }
+        return null;
+    }
+
+    private static List<Customer> customersWithId(String id){
+        List<Customer> list = customersById.get(id);
+        return (list == null) ? Collections.emptyList() : list;
+    }
+
+    // The customer already added with the same identifier and name, else c once added;
+    // atomic, so two sessions loading the same customer end up with one object
+    private static Customer findOrAdd(Customer c){
+        Customer[] result = { c };
+        customersById.compute(c.id, (id, list) -> {
+            if (list == null) list = new CopyOnWriteArrayList<>();
+            for (Customer existing : list) {
+                if (existing.firstName.equals(c.firstName) && existing.lastName.equals(c.lastName)) {
+                    result[0] = existing;
+                    return list;
+                }
+            }
+            list.add(c);
+            return list;
+        });
+        return result[0];
+    }
+
     public void viewTrip(Customer customer){
         System.out.println(customer.toString());
     }
 
+    /** Snapshot of every customer in the catalog. */
     public ArrayList<Customer> getCustomers(){
-        return CustomerCatalog.customers;
+        ArrayList<Customer> all = new ArrayList<>();
+        for (List<Customer> list : customersById.values()) all.addAll(list);
+        return all;
     }
 
     public class Customer{
@@ -64,10 +195,14 @@ public class CustomerCatalog{
             return trip;
         }
 
-        public void addTrip(Trip trip){
+        public synchronized void addTrip(Trip trip){
             this.trips.add(trip);
         }
 
+        public synchronized void removeTrip(Trip trip){
+            this.trips.remove(trip);
+        }
+
         // Getters and setters
         public String getFirstName(){
             return this.firstName;
@@ -105,8 +240,9 @@ public class CustomerCatalog{
             this.age = age;
         }
 
-        public ArrayList<Trip> getTrips(){
-            return this.trips;
+        /** Copy of the customer's trips; sessions booking for the same customer add to them. */
+        public synchronized ArrayList<Trip> getTrips(){
+            return new ArrayList<>(this.trips);
         }
 
         @Override
@@ -116,11 +252,12 @@ public class CustomerCatalog{
             "ID: " + this.id + ", " +
             "Age: " + this.age;
 
-            // Separate trips into two categories
+            // Separate trips into two categories; only trips held in memory are shown,
+            // stored trips are read by viewTripFromDB
             ArrayList<Trip> tripHistory = new ArrayList<>();
             ArrayList<Trip> currentTrips = new ArrayList<>();
 
-            for (Trip trip: this.trips){
+            for (Trip trip: getTrips()){
                 if (trip.isFromPreviousSession()) {
                     tripHistory.add(trip);
                 } else {
@@ -156,94 +293,464 @@ public class CustomerCatalog{
 }
 
 // ====================== DATABASE METHODS ======================
-    public void saveCustomerToDB(Customer customer) {
-        String sql = "INSERT INTO Customer (first_name, last_name, age, identifier) VALUES (?, ?, ?, ?)";
-        try (Connection conn = DBManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, customer.getFirstName());
-            stmt.setString(2, customer.getLastName());
-            stmt.setInt(3, customer.getAge());
-            stmt.setString(4, customer.getId());
-            stmt.executeUpdate();
-            System.out.println("Customer saved to DB: " + customer.getFullName());
+    /**
+     * Saves a booking: appended to the write-behind journal and stored later by the
+     * background writer when write-behind is enabled (see enableWriteBehind), stored
+     * right away with saveBookingToDB otherwise. A booked trip's seats are counted in
+     * the database either way before this returns; with write-behind in their own
+     * transaction. Returns false if it could not be saved, e.g. because a train is full.
+     */
+    public boolean saveBooking(List<Customer> newCustomers, List<Customer> travellers,
+                               Trip trip, TrainGraph.PathResult path) {
+        BookingWriter writer = writeBehind;
+        if (writer == null) return saveBookingToDB(newCustomers, travellers, trip, path) != null;
+
+        PendingBooking booking = PendingBooking.of(newCustomers, travellers, trip, path, false);
+        if (booking.seatClass != null) {
+            if (!takeSeats(booking)) return false;
+            booking = PendingBooking.of(newCustomers, travellers, trip, path, true);
+        }
+        try {
+            writer.submit(booking);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            System.out.println(" Could not queue booking, saving it directly: " + e.getMessage());
+            if (saveBookingsToDB(Collections.singletonList(booking)) != null) return true;
+            giveBackSeats(booking);
+            return false;
+        }
+    }
+
+    // Counts the booking's seats in the database, in their own transaction; false if a train is full
+    private static boolean takeSeats(PendingBooking b) {
+        Connection conn = DBManager.getConnection();
+        if (conn == null) {
+            System.out.println(" Could not take seats: no database connection");
+            return false;
+        }
+        try (conn) {
+            conn.setAutoCommit(false);
+            try {
+                seats.takeInDB(conn, b.routeIds, b.legDates, b.seatClass, b.travellers.size());
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
         } catch (SQLException e) {
-            System.out.println(" Could not save customer: " + e.getMessage());
+            System.out.println(" Could not take seats: " + e.getMessage());
+            return false;
         }
     }
 
-    public void saveReservationToDB(Reservation r, int tripId) {
-        String sql = "INSERT INTO Reservation (trip_id, passenger_first_name, passenger_last_name, passenger_age, passenger_id, ticket_number)"
-                   + " VALUES (?, ?, ?, ?, ?, ?)";
-        try (Connection conn = DBManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            CustomerCatalog.Customer c = r.getCustomer();
-            stmt.setInt(1, tripId);
-            stmt.setString(2, c.getFirstName());
-            stmt.setString(3, c.getLastName());
-            stmt.setInt(4, c.getAge());
-            stmt.setString(5, c.getId());
-            stmt.setString(6, "TICKET-" + r.getId());
-            stmt.executeUpdate();
-            System.out.println(" Reservation saved for passenger " + c.getFullName());
+    /**
+     * Gives back every seat of a queued booking that will never be stored (see BookingWriter):
+     * in the database if they were counted there, and in this instance's counts unless the
+     * booking was read back from the journal, i.e. counted by an earlier run.
+     */
+    static void abandonBooking(PendingBooking b) {
+        giveBackSeats(b);
+        if (b.seatClass != null && !b.replayed) {
+            seats.release(b.routeIds, b.legDates, b.seatClass, b.travellers.size());
+        }
+    }
+
+    /** Takes back seats counted in the database for a booking (seatsHeld) that will not be stored. */
+    static void giveBackSeats(PendingBooking b) {
+        if (b.seatClass == null || !b.seatsHeld) return;
+        Connection conn = DBManager.getConnection();
+        if (conn == null) {
+            System.out.println(" Could not give back seats: no database connection");
+            return;
+        }
+        try (conn) {
+            conn.setAutoCommit(false);
+            seats.giveBackInDB(conn, b.routeIds, b.legDates, b.seatClass, b.travellers.size());
+            conn.commit();
+        } catch (SQLException e) {
+            System.out.println(" Could not give back seats: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Turns on write-behind: bookings are journaled to {@code journal} and written to the
+     * database by a background thread in batches of up to batchSize, at least every
+     * flushMillis. Bookings left in the journal by a previous run are written first.
+     */
+    public static synchronized void enableWriteBehind(Path journal, int capacity, int batchSize, long flushMillis)
+            throws IOException {
+        if (writeBehind == null) writeBehind = BookingWriter.start(journal, capacity, batchSize, flushMillis);
+    }
+
+    /** Flushes what is queued and stops the background writer (no-op when not enabled). */
+    public static synchronized void disableWriteBehind() {
+        if (writeBehind != null) {
+            writeBehind.close();
+            writeBehind = null;
+        }
+    }
+
+    /** A booking reduced to the values that are written to the database. */
+    static final class PendingBooking {
+        static final class Passenger {
+            final String firstName;
+            final String lastName;
+            final int age;
+            final String id;
+
+            Passenger(String firstName, String lastName, int age, String id) {
+                this.firstName = firstName;
+                this.lastName = lastName;
+                this.age = age;
+                this.id = id;
+            }
+        }
+
+        final String origin;
+        final String destination;
+        final int departureDay;             // DayOfWeek value, 0 if unknown
+        final List<String> routeIds;        // trains in travel order
+        final List<Passenger> newCustomers; // rows to add to Customer
+        final List<Passenger> travellers;   // one Trip row each
+        final List<String> tickets;         // ticket number of each traveller's reservation
+        final boolean replayed;             // read back from the write-behind journal, may be stored already
+        final SeatInventory.SeatClass seatClass; // null if booked without seats (older journal entries)
+        final List<LocalDate> legDates;     // date each train leaves on, empty if seatClass is null
+        final boolean seatsHeld;            // seats already counted in SeatInventory
+
+        PendingBooking(String origin, String destination, int departureDay, List<String> routeIds,
+                       List<Passenger> newCustomers, List<Passenger> travellers, List<String> tickets,
+                       boolean replayed, SeatInventory.SeatClass seatClass, List<LocalDate> legDates,
+                       boolean seatsHeld) {
+            this.origin = origin;
+            this.destination = destination;
+            this.departureDay = departureDay;
+            this.routeIds = routeIds;
+            this.newCustomers = newCustomers;
+            this.travellers = travellers;
+            this.tickets = tickets;
+            this.replayed = replayed;
+            this.seatClass = seatClass;
+            this.legDates = legDates;
+            this.seatsHeld = seatsHeld;
+        }
+
+        LocalDate travelDate() {
+            return legDates.isEmpty() ? null : legDates.get(0);
+        }
+
+        static PendingBooking of(List<Customer> newCustomers, List<Customer> travellers,
+                                 Trip trip, TrainGraph.PathResult path, boolean seatsHeld) {
+            List<Passenger> added = new ArrayList<>();
+            for (Customer c : newCustomers) added.add(passenger(c));
+            List<Passenger> passengers = new ArrayList<>();
+            List<String> tickets = new ArrayList<>();
+            for (Customer c : travellers) {
+                passengers.add(passenger(c));
+                for (Reservation r : trip.getReservations()) {
+                    if (r.getCustomer() == c) tickets.add("TICKET-" + r.getId());
+                }
+            }
+            return new PendingBooking(path.edges.get(0).departureCity,
+                    path.edges.get(path.edges.size() - 1).arrivalCity,
+                    path.startDay().getValue(), routeIds(path), added, passengers, tickets, false,
+                    trip.getSeatClass(),
+                    trip.getTravelDate() == null ? new ArrayList<>() : SeatInventory.legDates(path, trip.getTravelDate()),
+                    seatsHeld);
+        }
+
+        private static Passenger passenger(Customer c) {
+            return new Passenger(c.getFirstName(), c.getLastName(), c.getAge(), c.getId());
+        }
+    }
+
+    /**
+     * Saves a whole booking in one transaction (see saveBookingsToDB).
+     * Returns the trip_id of each traveller's row (in traveller order), or null on failure.
+     */
+    public List<Integer> saveBookingToDB(List<Customer> newCustomers, List<Customer> travellers,
+                                         Trip trip, TrainGraph.PathResult path) {
+        List<List<Integer>> tripIds = saveBookingsToDB(
+                Collections.singletonList(PendingBooking.of(newCustomers, travellers, trip, path, false)));
+        return (tripIds == null) ? null : tripIds.get(0);
+    }
+
+    /**
+     * Saves bookings in one transaction: the customers not yet in the database, one Trip row
+     * per traveller and, for each of those rows, the traveller's reservation. Every table
+     * gets a single batched INSERT; customer and trip ids come back as generated keys or
+     * from one lookup. Replayed bookings whose first reservation is already stored are
+     * skipped. Either everything is stored or nothing is.
+     * Returns the trip_ids of each booking (empty for skipped ones), or null on failure.
+     */
+    static List<List<Integer>> saveBookingsToDB(List<PendingBooking> bookings) {
+        try {
+            return storeBookings(bookings);
         } catch (SQLException e) {
-            System.out.println(" Could not save reservation: " + e.getMessage());
+            System.out.println(" Could not save booking, nothing was stored: " + e.getMessage());
+            return null;
         }
     }
 
-    public int saveTripToDB(Trip trip, Customer customer, TrainGraph.PathResult path) {
-        String sql = "INSERT INTO Trip (customer_id, origin, destination, path_description, route) VALUES (?, ?, ?, ?, ?)";
+    /**
+     * saveBookingsToDB, throwing the failure so callers can tell an unavailable database
+     * (SQLTransientConnectionException when no connection could be obtained) from
+     * bookings the database rejects.
+     */
+    static List<List<Integer>> storeBookings(List<PendingBooking> bookings) throws SQLException {
+        String insertCustomer = "INSERT INTO Customer (first_name, last_name, age, identifier) VALUES (?, ?, ?, ?)";
+        String insertTrip = "INSERT INTO Trip (customer_id, origin, destination, departure_day, travel_date, seat_class)"
+                          + " VALUES (?, ?, ?, ?, ?, ?)";
+        String insertReservation = "INSERT INTO Reservation (trip_id, passenger_first_name, passenger_last_name, passenger_age, passenger_id, ticket_number)"
+                                 + " VALUES (?, ?, ?, ?, ?, ?)";
+
+        Connection conn = DBManager.getConnection();
+        if (conn == null) throw new SQLTransientConnectionException("no database connection");
+        try (conn) {
+            conn.setAutoCommit(false);
+            try {
+                // 1) Replayed bookings that were stored before the journal was updated
+                Set<String> stored = new HashSet<>();
+                List<String> tickets = new ArrayList<>();
+                for (PendingBooking b : bookings) {
+                    if (b.replayed && !b.tickets.isEmpty()) tickets.add(b.tickets.get(0));
+                }
+                if (!tickets.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(
+                            "SELECT ticket_number, passenger_id FROM Reservation WHERE ticket_number IN (" + placeholders(tickets.size()) + ")")) {
+                        for (int i = 0; i < tickets.size(); i++) stmt.setString(i + 1, tickets.get(i));
+                        ResultSet rs = stmt.executeQuery();
+                        while (rs.next()) stored.add(rs.getString(1) + "\t" + rs.getString(2));
+                    }
+                }
+                List<PendingBooking> todo = new ArrayList<>();
+                for (PendingBooking b : bookings) {
+                    boolean done = b.replayed && !b.tickets.isEmpty()
+                            && stored.contains(b.tickets.get(0) + "\t" + b.travellers.get(0).id);
+                    if (!done) todo.add(b);
+                }
 
-        try (Connection conn = DBManager.getConnection()) {
+                // Seats of the bookings not counted yet; a full train rolls everything back
+                for (PendingBooking b : todo) {
+                    if (b.seatClass != null && !b.seatsHeld) {
+                        seats.takeInDB(conn, b.routeIds, b.legDates, b.seatClass, b.travellers.size());
+                    }
+                }
+
+                // 2) customer_id of everyone involved who is already stored
+                Map<String, Integer> customerIds = new HashMap<>();
+                Set<String> identifiers = new LinkedHashSet<>();
+                for (PendingBooking b : todo) {
+                    for (PendingBooking.Passenger p : b.travellers) identifiers.add(p.id);
+                    for (PendingBooking.Passenger p : b.newCustomers) identifiers.add(p.id);
+                }
+                if (!identifiers.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(
+                            "SELECT customer_id, identifier FROM Customer WHERE identifier IN (" + placeholders(identifiers.size()) + ")")) {
+                        int i = 1;
+                        for (String id : identifiers) stmt.setString(i++, id);
+                        ResultSet rs = stmt.executeQuery();
+                        while (rs.next()) customerIds.put(rs.getString("identifier"), rs.getInt("customer_id"));
+                    }
+                }
 
-            // Find customer_id from DB
-            String lookup = "SELECT customer_id FROM Customer WHERE identifier=? LIMIT 1";
-            try (PreparedStatement findStmt = conn.prepareStatement(lookup)) {
-                findStmt.setString(1, customer.getId());
-                ResultSet rs = findStmt.executeQuery();
-                if (rs.next()) {
-                    int customerId = rs.getInt("customer_id");
+                // 3) New customers (once each, even if queued by several bookings)
+                Map<String, PendingBooking.Passenger> newCustomers = new LinkedHashMap<>();
+                for (PendingBooking b : todo) {
+                    for (PendingBooking.Passenger p : b.newCustomers) {
+                        if (!customerIds.containsKey(p.id)) newCustomers.putIfAbsent(p.id, p);
+                    }
+                }
+                if (!newCustomers.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(insertCustomer, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                        for (PendingBooking.Passenger p : newCustomers.values()) {
+                            stmt.setString(1, p.firstName);
+                            stmt.setString(2, p.lastName);
+                            stmt.setInt(3, p.age);
+                            stmt.setString(4, p.id);
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                        ResultSet keys = stmt.getGeneratedKeys();
+                        for (PendingBooking.Passenger p : newCustomers.values()) {
+                            if (!keys.next()) throw new SQLException("Missing generated customer_id for " + p.firstName + " " + p.lastName);
+                            customerIds.put(p.id, keys.getInt(1));
+                        }
+                    }
+                }
 
-                    // Build route string (pipe-separated route IDs)
-                    StringBuilder routeBuilder = new StringBuilder();
-                    for (int i = 0; i < path.edges.size(); i++) {
-                        routeBuilder.append(path.edges.get(i).getRouteID());
-                        if (i < path.edges.size() - 1) {
-                            routeBuilder.append("|");
+                // 4) One trip row per traveller
+                List<Integer> tripIds = new ArrayList<>();
+                int rows = 0;
+                try (PreparedStatement stmt = conn.prepareStatement(insertTrip, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                    for (PendingBooking b : todo) {
+                        for (PendingBooking.Passenger p : b.travellers) {
+                            Integer customerId = customerIds.get(p.id);
+                            if (customerId == null) throw new SQLException("Could not find customer ID for " + p.firstName + " " + p.lastName);
+                            stmt.setInt(1, customerId);
+                            stmt.setString(2, b.origin);
+                            stmt.setString(3, b.destination);
+                            if (b.departureDay == 0) stmt.setNull(4, Types.TINYINT);
+                            else stmt.setInt(4, b.departureDay);
+                            if (b.travelDate() == null) stmt.setNull(5, Types.DATE);
+                            else stmt.setDate(5, java.sql.Date.valueOf(b.travelDate()));
+                            if (b.seatClass == null) stmt.setNull(6, Types.VARCHAR);
+                            else stmt.setString(6, b.seatClass.name());
+                            stmt.addBatch();
+                            rows++;
                         }
                     }
+                    if (rows > 0) {
+                        stmt.executeBatch();
+                        ResultSet keys = stmt.getGeneratedKeys();
+                        while (keys.next()) tripIds.add(keys.getInt(1));
+                    }
+                    if (tripIds.size() != rows) throw new SQLException("Could not retrieve generated trip_id");
+                }
 
-                    try (PreparedStatement stmt = conn.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
-                        stmt.setInt(1, customerId);
-                        stmt.setString(2, path.edges.get(0).departureCity);
-                        stmt.setString(3, path.edges.get(path.edges.size() - 1).arrivalCity);
-                        stmt.setString(4, path.toString());
-                        stmt.setString(5, routeBuilder.toString());
-                        stmt.executeUpdate();
-
-                        // Get the auto-generated trip_id from database
-                        ResultSet generatedKeys = stmt.getGeneratedKeys();
-                        if (generatedKeys.next()) {
-                            int tripId = generatedKeys.getInt(1);
-                            System.out.println(" Trip saved to DB for " + customer.getFullName() + " with trip_id: " + tripId);
-                            return tripId;
-                        } else {
-                            System.out.println(" Could not retrieve generated trip_id");
-                            return -1;
+                // 5) The legs of every trip row
+                List<List<String>> legs = new ArrayList<>();
+                for (PendingBooking b : todo) {
+                    for (int i = 0; i < b.travellers.size(); i++) legs.add(b.routeIds);
+                }
+                insertLegs(conn, tripIds, legs);
+
+                // 6) Each traveller's reservation, attached to that traveller's trip row
+                try (PreparedStatement stmt = conn.prepareStatement(insertReservation)) {
+                    int row = 0;
+                    for (PendingBooking b : todo) {
+                        for (int i = 0; i < b.travellers.size(); i++, row++) {
+                            PendingBooking.Passenger p = b.travellers.get(i);
+                            stmt.setInt(1, tripIds.get(row));
+                            stmt.setString(2, p.firstName);
+                            stmt.setString(3, p.lastName);
+                            stmt.setInt(4, p.age);
+                            stmt.setString(5, p.id);
+                            stmt.setString(6, b.tickets.get(i));
+                            stmt.addBatch();
                         }
                     }
-                } else {
-                    System.out.println(" Could not find customer ID for " + customer.getFullName());
-                    return -1;
+                    if (rows > 0) stmt.executeBatch();
+                }
+
+                conn.commit();
+                for (String id : newCustomers.keySet()) forgetCustomer(id);
+                for (PendingBooking b : todo) {
+                    for (PendingBooking.Passenger p : b.travellers) forgetHistory(p.lastName, p.id);
                 }
+
+                List<List<Integer>> result = new ArrayList<>();
+                int row = 0;
+                for (PendingBooking b : bookings) {
+                    if (!todo.contains(b)) {
+                        result.add(Collections.emptyList());
+                    } else {
+                        result.add(new ArrayList<>(tripIds.subList(row, row + b.travellers.size())));
+                        row += b.travellers.size();
+                    }
+                }
+                System.out.println(" Booking(s) saved to DB: " + rows + " traveller(s), trip_ids " + tripIds);
+                return result;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
-        } catch (SQLException e) {
-            System.out.println(" Could not save trip: " + e.getMessage());
-            e.printStackTrace();
-            return -1;
         }
     }
 
+    /**
+     * Text for a stored trip. Trips saved with a departure day are rendered from the
+     * current timetable (the graph, or TrainConnection.trainConnections when graph is
+     * null); older rows keep the description saved with them. Legs missing from the
+     * timetable are listed by route id.
+     */
+    static String describeTrip(TrainGraph graph, List<String> routeIds, int departureDay, String legacyDescription) {
+        if (departureDay == 0 && legacyDescription != null) return legacyDescription;
+
+        List<TrainConnection> edges = new ArrayList<>();
+        for (String id : routeIds) {
+            TrainConnection tc = (graph == null) ? TrainConnection.findByRouteID(id) : graph.getConnectionByRouteId(id);
+            if (tc == null) {
+                edges = null;
+                break;
+            }
+            edges.add(tc);
+        }
+        if (edges == null || edges.isEmpty()) {
+            return "Routes " + String.join(" → ", routeIds) + " (no longer in the timetable)";
+        }
+        TrainGraph.PathResult path = new TrainGraph.PathResult(
+                edges.get(0).departureCity, edges.get(edges.size() - 1).arrivalCity, edges);
+        return path.withDepartureDay(departureDay == 0 ? null : DayOfWeek.of(departureDay)).toString();
+    }
+
+    private static String placeholders(int n) {
+        return String.join(", ", Collections.nCopies(n, "?"));
+    }
+
+    private static List<String> routeIds(TrainGraph.PathResult path) {
+        List<String> ids = new ArrayList<>();
+        for (TrainConnection tc : path.edges) ids.add(tc.getRouteID());
+        return ids;
+    }
+
+    // One TripLeg row per train of each trip, in a single batch
+    private static void insertLegs(Connection conn, List<Integer> tripIds, List<List<String>> legs) throws SQLException {
+        String sql = "INSERT INTO TripLeg (trip_id, seq, route_id) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int rows = 0;
+            for (int t = 0; t < tripIds.size(); t++) {
+                List<String> routeIds = legs.get(t);
+                for (int seq = 0; seq < routeIds.size(); seq++) {
+                    stmt.setInt(1, tripIds.get(t));
+                    stmt.setInt(2, seq);
+                    stmt.setString(3, routeIds.get(seq));
+                    stmt.addBatch();
+                    rows++;
+                }
+            }
+            if (rows > 0) stmt.executeBatch();
+        }
+    }
+
+    /**
+     * The customer with this identifier in the database, or null. Answers are cached
+     * (see customerCache), so repeated lookups of the same id skip the database.
+     */
     public Customer findCustomerByIdFromDB(String identifier) {
+        Customer customer;
+        CachedCustomer cached = customerCache.get(identifier);
+        if (cached != null && System.nanoTime() - cached.expiresAt < 0) {
+            customerCacheHits.incrementAndGet();
+            customer = cached.customer;
+        } else {
+            customerCacheMisses.incrementAndGet();
+            try {
+                customer = loadCustomerById(identifier);
+            } catch (SQLException e) {
+                System.out.println("Error finding customer: " + e.getMessage());
+                return null; // not cached, the next lookup asks the database again
+            }
+            customerCache.put(identifier, new CachedCustomer(customer,
+                    customer == null ? UNKNOWN_ID_TTL_NANOS : CUSTOMER_TTL_NANOS));
+        }
+        return customer;
+    }
+
+    /** Drops the cached lookup of this identifier, e.g. once the customer is stored. */
+    static void forgetCustomer(String identifier) {
+        customerCache.remove(identifier);
+    }
+
+    /** Hit and miss counts of the findCustomerByIdFromDB cache, for logging. */
+    public static String customerCacheStats() {
+        long hits = customerCacheHits.get(), misses = customerCacheMisses.get();
+        return String.format("hits=%d misses=%d hitRate=%.1f%% size=%d", hits, misses,
+                hits + misses == 0 ? 0.0 : 100.0 * hits / (hits + misses), customerCache.size());
+    }
+
+    private Customer loadCustomerById(String identifier) throws SQLException {
         String sql = "SELECT first_name, last_name, age, identifier FROM Customer WHERE identifier=? LIMIT 1";
         try (Connection conn = DBManager.getConnection();
             PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -255,48 +762,145 @@ public class CustomerCatalog{
                 int age = rs.getInt("age");
                 String id = rs.getString("identifier");
 
-                // Check if customer already exists in memory
-                Customer existing = find(id, firstName, lastName);
-                if (existing != null) {
-                    return existing;
-                }
+                // Reuse the customer if already in memory, else add one from DB data
+                return findOrAdd(new Customer(firstName, lastName, id, age));
+            }
+            return null;
+        }
+    }
 
-                // Create new customer object from DB data
-                Customer customer = new Customer(firstName, lastName, id, age);
-                customers.add(customer);
-                return customer;
+    /** A trip as stored in the database: its Trip row and the route ids of its legs. */
+    static final class StoredTrip {
+        final int tripId;
+        final String origin;
+        final String destination;
+        final int departureDay;          // DayOfWeek value, 0 for rows written by older versions
+        final String legacyDescription;  // path_description of older rows, else null
+        final List<String> routeIds = new ArrayList<>();
+
+        StoredTrip(int tripId, String origin, String destination, int departureDay, String legacyDescription) {
+            this.tripId = tripId;
+            this.origin = origin;
+            this.destination = destination;
+            this.departureDay = departureDay;
+            this.legacyDescription = legacyDescription;
+        }
+
+        String render(TrainGraph graph) {
+            return "------------------------------\n" +
+                   "Trip ID: " + tripId + "\n" +
+                   "From: " + origin + "\n" +
+                   "To: " + destination + "\n" +
+                   "Path: " + describeTrip(graph, routeIds, departureDay, legacyDescription);
+        }
+    }
+
+    /**
+     * One page of a customer's stored trips, oldest first: at most {@code limit} trips with
+     * a trip_id above {@code afterTripId} (0 for the first page). A page shorter than
+     * limit is the last one. Pages are kept in a bounded LRU cache (db.history.cacheTrips
+     * trips in total); a saved booking drops its travellers' pages. Returns null if the
+     * database could not be read.
+     */
+    static List<StoredTrip> tripHistory(String lastName, String identifier, int afterTripId, int limit) {
+        String key = historyKey(lastName, identifier) + "\t" + afterTripId + "\t" + limit;
+        synchronized (historyPages) {
+            List<StoredTrip> page = historyPages.get(key);
+            if (page != null) return page;
+        }
+        List<StoredTrip> page = loadHistory(lastName, identifier, afterTripId, limit);
+        if (page != null) cacheHistoryPage(key, page);
+        return page;
+    }
+
+    private static void cacheHistoryPage(String key, List<StoredTrip> page) {
+        synchronized (historyPages) {
+            List<StoredTrip> old = historyPages.put(key, page);
+            cachedTrips += page.size() - (old == null ? 0 : old.size());
+            // Least recently used pages first
+            Iterator<List<StoredTrip>> it = historyPages.values().iterator();
+            while (cachedTrips > HISTORY_CACHE_TRIPS && it.hasNext()) {
+                cachedTrips -= it.next().size();
+                it.remove();
             }
-        } catch (SQLException e) {
-            System.out.println("Error finding customer: " + e.getMessage());
         }
-        return null;
     }
 
-            public void viewTripFromDB(String lastName, String identifier) {
-            // Find customer in memory to check for in-memory trips
-            Customer customerInMemory = null;
-            for (Customer c : customers) {
-                if (c.getLastName().equals(lastName) && c.getId().equals(identifier)) {
-                    customerInMemory = c;
-                    break;
+    static void forgetHistory(String lastName, String identifier) {
+        String prefix = historyKey(lastName, identifier) + "\t";
+        synchronized (historyPages) {
+            Iterator<Map.Entry<String, List<StoredTrip>>> it = historyPages.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, List<StoredTrip>> e = it.next();
+                if (e.getKey().startsWith(prefix)) {
+                    cachedTrips -= e.getValue().size();
+                    it.remove();
                 }
             }
+        }
+    }
 
-            // Query database for all trips
-            String sql = """
-                SELECT
-                    c.first_name,
-                    c.last_name,
-                    c.identifier,
-                    c.age,
-                    t.trip_id,
-                    t.origin,
-                    t.destination,
-                    t.path_description
-                FROM Customer c
-                JOIN Trip t ON c.customer_id = t.customer_id
-                WHERE c.last_name = ? AND c.identifier = ?;
-            """;
+    private static String historyKey(String lastName, String identifier) {
+        return lastName + "\t" + identifier;
+    }
+
+    // Reads one page of trips, starting after afterTripId, then the legs of the page's trips
+    private static List<StoredTrip> loadHistory(String lastName, String identifier, int afterTripId, int limit) {
+        String tripsSql = """
+            SELECT t.trip_id, t.origin, t.destination, t.departure_day, t.path_description
+            FROM Customer c
+            JOIN Trip t ON c.customer_id = t.customer_id
+            WHERE c.last_name = ? AND c.identifier = ? AND t.trip_id > ?
+            ORDER BY t.trip_id
+            LIMIT ?
+        """;
+
+        try (Connection conn = DBManager.getConnection();
+             PreparedStatement trips = conn.prepareStatement(tripsSql)) {
+            Map<Integer, StoredTrip> page = new LinkedHashMap<>();
+            trips.setString(1, lastName);
+            trips.setString(2, identifier);
+            trips.setInt(3, afterTripId);
+            trips.setInt(4, limit);
+            try (ResultSet rs = trips.executeQuery()) {
+                while (rs.next()) {
+                    StoredTrip trip = new StoredTrip(rs.getInt("trip_id"), rs.getString("origin"),
+                            rs.getString("destination"), rs.getInt("departure_day"), // 0 when NULL
+                            rs.getString("path_description"));
+                    page.put(trip.tripId, trip);
+                }
+            }
+            if (page.isEmpty()) return new ArrayList<>();
+
+            String legsSql = "SELECT trip_id, route_id FROM TripLeg WHERE trip_id IN ("
+                           + placeholders(page.size()) + ") ORDER BY trip_id, seq";
+            try (PreparedStatement legs = conn.prepareStatement(legsSql)) {
+                int i = 1;
+                for (int tripId : page.keySet()) legs.setInt(i++, tripId);
+                try (ResultSet rs = legs.executeQuery()) {
+                    while (rs.next()) page.get(rs.getInt("trip_id")).routeIds.add(rs.getString("route_id"));
+                }
+            }
+            return new ArrayList<>(page.values());
+        } catch (SQLException | RuntimeException e) {
+            System.out.println("Error loading trip history: " + e.getMessage());
+            return null;
+        }
+    }
+
+            /**
+             * Prints a customer's stored and current trips. Stored trips are rendered from
+             * their legs and departure day with the given graph; rows written before trips
+             * were stored that way show their saved description. They are read a page at a
+             * time (db.history.pageSize trips); after each full page showMore is asked
+             * whether to read the next one.
+             */
+            public void viewTripFromDB(String lastName, String identifier, TrainGraph graph,
+                                       java.util.function.BooleanSupplier showMore) {
+            // Find customer in memory to check for in-memory trips
+            Customer customerInMemory = findByLastNameAndId(lastName, identifier);
+
+            String sql = "SELECT first_name, last_name, identifier, age FROM Customer WHERE last_name = ? AND identifier = ? LIMIT 1";
 
             try (Connection conn = DBManager.getConnection();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -305,31 +909,22 @@ public class CustomerCatalog{
                 ps.setString(2, identifier);
 
                 try (ResultSet rs = ps.executeQuery()) {
-                    ArrayList<String> historyTrips = new ArrayList<>();
+                    List<StoredTrip> firstPage = Collections.emptyList();
                     ArrayList<String> currentTrips = new ArrayList<>();
                     String customerInfo = "";
                     boolean found = false;
 
-                    // Collect all trips from database
-                    while (rs.next()) {
-                        if (!found) {
-                            String firstName = rs.getString("first_name");
-                            String lastNameDB = rs.getString("last_name");
-                            String id = rs.getString("identifier");
-                            int age = rs.getInt("age");
-                            customerInfo = "Customer Name: " + firstName + " " + lastNameDB + ", ID: " + id + ", Age: " + age;
-                        }
-                        found = true;
-
-                        int tripId = rs.getInt("trip_id");
-                        String tripInfo = "------------------------------\n" +
-                                        "Trip ID: " + tripId + "\n" +
-                                        "From: " + rs.getString("origin") + "\n" +
-                                        "To: " + rs.getString("destination") + "\n" +
-                                        "Path: " + rs.getString("path_description");
+                    if (rs.next()) {
+                        String firstName = rs.getString("first_name");
+                        String lastNameDB = rs.getString("last_name");
+                        String id = rs.getString("identifier");
+                        int age = rs.getInt("age");
+                        customerInfo = "Customer Name: " + firstName + " " + lastNameDB + ", ID: " + id + ", Age: " + age;
 
                         // All trips from database are considered history
-                        historyTrips.add(tripInfo);
+                        List<StoredTrip> page = tripHistory(lastName, identifier, 0, HISTORY_PAGE_SIZE);
+                        if (page != null) firstPage = page;
+                        found = !firstPage.isEmpty();
                     }
 
                     // Add current trips from memory that might not be in DB query results yet
@@ -349,11 +944,17 @@ public class CustomerCatalog{
 
                     System.out.println(customerInfo);
 
-                    // Display Trip History
-                    if (!historyTrips.isEmpty()) {
+                    // Display Trip History, one page at a time
+                    if (found) {
                         System.out.println("\n=== TRIP HISTORY ===");
-                        for (String trip : historyTrips) {
-                            System.out.println(trip);
+                        List<StoredTrip> page = firstPage;
+                        while (true) {
+                            for (StoredTrip trip : page) {
+                                System.out.println(trip.render(graph));
+                            }
+                            if (page.size() < HISTORY_PAGE_SIZE || !showMore.getAsBoolean()) break;
+                            page = tripHistory(lastName, identifier, page.get(page.size() - 1).tripId, HISTORY_PAGE_SIZE);
+                            if (page == null || page.isEmpty()) break;
                         }
                     }
 
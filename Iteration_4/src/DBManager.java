@@ -1,24 +1,293 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DBManager {
 
-    // Database credentials
+    // Database settings, read from db.properties in the working directory (or the file given
+    // by -Ddb.config), then overridden by -Ddb.* system properties.
     // Use "localhost" when running Java locally, "db" when running in Docker
-    private static final String URL = "jdbc:mysql://localhost:3306/train_system";
-    private static final String USER = "user";
-    private static final String PASSWORD = "pass"; 
+    private static final Properties CONFIG = loadConfig();
+    private static final String URL = setting("db.url", "jdbc:mysql://localhost:3306/train_system");
+    private static final String USER = setting("db.user", "user");
+    private static final String PASSWORD = setting("db.password", "pass");
 
+    private static final ConnectionPool POOL = new ConnectionPool(
+            Integer.parseInt(setting("db.pool.maxSize", "8")),
+            Long.parseLong(setting("db.pool.maxWaitMillis", "5000")),
+            Long.parseLong(setting("db.pool.idleTimeoutMillis", "300000")),
+            Long.parseLong(setting("db.pool.maxLifetimeMillis", "1800000")),
+            Long.parseLong(setting("db.pool.validateAfterMillis", "1000")));
+
+    /**
+     * Borrows a connection from the pool; close() hands it back instead of closing it.
+     * Returns null if no connection could be obtained.
+     */
     public static Connection getConnection() {
         try {
-            //  Load MySQL JDBC driver
-            Class.forName("com.mysql.cj.jdbc.Driver");
-
-            //  Connect to the database
-            return DriverManager.getConnection(URL, USER, PASSWORD);
-
-        } catch (SQLException | ClassNotFoundException e) {
+            return POOL.borrow();
+        } catch (SQLException e) {
             e.printStackTrace();
             return null;
         }
     }
+
+    /** Pool size and wait-time counters, for logging. */
+    public static String poolStats() {
+        return POOL.stats();
+    }
+
+    /** Closes the idle connections; connections still borrowed are closed when returned. */
+    public static void shutdown() {
+        POOL.close();
+    }
+
+    private static Properties loadConfig() {
+        Properties props = new Properties();
+        Path file = Path.of(System.getProperty("db.config", "db.properties"));
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                props.load(in);
+            } catch (IOException e) {
+                System.out.println("Could not read " + file + ": " + e.getMessage());
+            }
+        }
+        return props;
+    }
+
+    // A setting from -D<key> or db.properties
+    static String setting(String key, String defaultValue) {
+        return System.getProperty(key, CONFIG.getProperty(key, defaultValue));
+    }
+
+    /**
+     * Bounded pool of physical connections.
+     * - At most maxSize connections exist (idle + borrowed); borrowers wait up to maxWait
+     * - Idle connections are reused newest first and checked with isValid() when they
+     *   have been idle longer than validateAfter
+     * - Connections idle longer than idleTimeout or older than maxLifetime are closed,
+     *   on borrow/return and by a background sweep
+     */
+    private static final class ConnectionPool {
+        private final long maxWaitMillis;
+        private final long idleTimeoutNanos;
+        private final long maxLifetimeNanos;
+        private final long validateAfterNanos;
+
+        private final Semaphore permits;
+        private final ArrayDeque<Pooled> idle = new ArrayDeque<>();
+        private final ScheduledExecutorService evictor;
+        private volatile boolean closed;
+
+        // Metrics
+        private final AtomicLong borrowed = new AtomicLong();
+        private final AtomicLong created = new AtomicLong();
+        private final AtomicLong discarded = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private static final class Pooled {
+            final Connection raw;
+            final long createdAt;
+            long lastUsed;
+
+            Pooled(Connection raw) {
+                this.raw = raw;
+                this.createdAt = this.lastUsed = System.nanoTime();
+            }
+        }
+
+        ConnectionPool(int maxSize, long maxWaitMillis, long idleTimeoutMillis,
+                       long maxLifetimeMillis, long validateAfterMillis) {
+            this.maxWaitMillis = maxWaitMillis;
+            this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+            this.maxLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(maxLifetimeMillis);
+            this.validateAfterNanos = TimeUnit.MILLISECONDS.toNanos(validateAfterMillis);
+            this.permits = new Semaphore(maxSize, true);
+
+            try {
+                //  Load MySQL JDBC driver
+                Class.forName("com.mysql.cj.jdbc.Driver");
+            } catch (ClassNotFoundException e) {
+                e.printStackTrace();
+            }
+
+            long sweep = Math.max(1000, idleTimeoutMillis / 2);
+            this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "db-pool-evictor");
+                t.setDaemon(true);
+                return t;
+            });
+            evictor.scheduleWithFixedDelay(this::evictIdle, sweep, sweep, TimeUnit.MILLISECONDS);
+        }
+
+        Connection borrow() throws SQLException {
+            if (closed) throw new SQLException("Connection pool is shut down");
+            long start = System.nanoTime();
+            try {
+                if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                    timeouts.incrementAndGet();
+                    throw new SQLException("Timed out after " + maxWaitMillis + " ms waiting for a database connection");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            }
+            long waited = System.nanoTime() - start;
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+            try {
+                Pooled p;
+                while ((p = takeIdle()) != null) {
+                    if (usable(p)) break;
+                    discard(p);
+                }
+                if (p == null) {
+                    //  Connect to the database
+                    p = new Pooled(DriverManager.getConnection(URL, USER, PASSWORD));
+                    created.incrementAndGet();
+                }
+                borrowed.incrementAndGet();
+                return wrap(p);
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        private synchronized Pooled takeIdle() {
+            return idle.pollFirst();
+        }
+
+        private boolean usable(Pooled p) {
+            long now = System.nanoTime();
+            if (now - p.createdAt > maxLifetimeNanos || now - p.lastUsed > idleTimeoutNanos) return false;
+            if (now - p.lastUsed < validateAfterNanos) return true;
+            try {
+                return p.raw.isValid(2);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        // Called when a borrower closes its handle
+        private void giveBack(Pooled p) {
+            try {
+                try {
+                    if (!p.raw.getAutoCommit()) {
+                        p.raw.rollback(); // don't leak an unfinished transaction to the next borrower
+                        p.raw.setAutoCommit(true);
+                    }
+                    p.lastUsed = System.nanoTime();
+                } catch (SQLException e) {
+                    discard(p);
+                    return;
+                }
+                if (closed || p.lastUsed - p.createdAt > maxLifetimeNanos) {
+                    discard(p);
+                    return;
+                }
+                synchronized (this) {
+                    idle.addFirst(p);
+                }
+            } finally {
+                permits.release();
+            }
+        }
+
+        private void evictIdle() {
+            long now = System.nanoTime();
+            synchronized (this) {
+                for (Iterator<Pooled> it = idle.iterator(); it.hasNext(); ) {
+                    Pooled p = it.next();
+                    if (now - p.createdAt > maxLifetimeNanos || now - p.lastUsed > idleTimeoutNanos) {
+                        it.remove();
+                        discard(p);
+                    }
+                }
+            }
+        }
+
+        private void discard(Pooled p) {
+            discarded.incrementAndGet();
+            try {
+                p.raw.close();
+            } catch (SQLException ignored) {
+                // already broken, nothing to do
+            }
+        }
+
+        void close() {
+            closed = true;
+            evictor.shutdownNow();
+            synchronized (this) {
+                while (!idle.isEmpty()) discard(idle.pollFirst());
+            }
+        }
+
+        synchronized String stats() {
+            long count = borrowed.get();
+            return String.format(
+                    "borrowed=%d created=%d discarded=%d idle=%d timeouts=%d avgWait=%.2fms maxWait=%.2fms",
+                    count, created.get(), discarded.get(), idle.size(), timeouts.get(),
+                    count == 0 ? 0.0 : totalWaitNanos.get() / 1e6 / count,
+                    maxWaitNanos.get() / 1e6);
+        }
+
+        // Handle given to callers: close() returns the connection, everything else is passed through
+        private Connection wrap(Pooled p) {
+            InvocationHandler handler = new InvocationHandler() {
+                private boolean returned;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "close":
+                            synchronized (this) {
+                                if (returned) return null;
+                                returned = true;
+                            }
+                            giveBack(p);
+                            return null;
+                        case "isClosed":
+                            synchronized (this) {
+                                if (returned) return true;
+                            }
+                            break;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            synchronized (this) {
+                                if (returned) throw new SQLException("Connection has been returned to the pool");
+                            }
+                    }
+                    try {
+                        return method.invoke(p.raw, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            };
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, handler);
+        }
+    }
 }
@@ -0,0 +1,146 @@
+// FastestPathTable.java
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Precomputed fastest path (≤ 3 edges) for every ordered pair of cities and every
+ * departure day, indexed by the city ids of a CompactTrainGraph.
+ * - Slot d (0 = Monday .. 6 = Sunday) only uses trains that all run on that day
+ * - Slot ANY_DAY ignores operating days
+ * - Duration uses the same timeline as PathResult.totalDuration
+ *
+ * A lookup is two array reads. A table is not modified once built: after connections
+ * change, refreshed() returns a copy in which only the rows of the sources that can
+ * reach a changed connection within two edges are recomputed.
+ */
+final class FastestPathTable {
+
+    static final int ANY_DAY = 7;
+    private static final int SLOTS = 8;
+    private static final int MAX_EDGES = 3;
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final int n;
+    // duration[slot][from * n + to] in minutes, NONE when there is no path
+    private final int[][] duration;
+    // legs[slot][(from * n + to) * MAX_EDGES + i]; unused trailing slots are null
+    private final TrainConnection[][] legs;
+
+    private final CompactTrainGraph graph;
+
+    FastestPathTable(CompactTrainGraph graph, boolean parallel) {
+        this.graph = graph;
+        this.n = graph.cityCount();
+        this.duration = new int[SLOTS][n * n];
+        this.legs = new TrainConnection[SLOTS][n * n * MAX_EDGES];
+
+        IntStream sources = IntStream.range(0, n);
+        if (parallel) sources = sources.parallel();
+        sources.forEach(this::computeRow); // each source only writes its own row
+    }
+
+    private FastestPathTable(FastestPathTable copy, CompactTrainGraph graph) {
+        this.graph = graph;
+        this.n = copy.n;
+        this.duration = new int[SLOTS][];
+        this.legs = new TrainConnection[SLOTS][];
+        for (int slot = 0; slot < SLOTS; slot++) {
+            duration[slot] = copy.duration[slot].clone();
+            legs[slot] = copy.legs[slot].clone();
+        }
+    }
+
+    int cityCount() { return n; }
+
+    /** Fastest path from -> to in the given slot, or null if there is none. */
+    TrainGraph.PathResult get(int from, int to, int slot) {
+        if (from < 0 || to < 0 || from >= n || to >= n) return null;
+        int pair = from * n + to;
+        if (duration[slot][pair] == NONE) return null;
+
+        int count = 0;
+        TrainConnection[] path = new TrainConnection[MAX_EDGES];
+        while (count < MAX_EDGES && legs[slot][pair * MAX_EDGES + count] != null) {
+            path[count] = legs[slot][pair * MAX_EDGES + count];
+            count++;
+        }
+        return new TrainGraph.PathResult(graph.cityName(from), graph.cityName(to),
+                Arrays.asList(path).subList(0, count));
+    }
+
+    /**
+     * Copy of this table for {@code updated}, the graph this table was built on after
+     * connections leaving {@code departureCities} were added or removed. {@code updated}
+     * must keep the city ids of {@code previous} (see CompactTrainGraph(List, CompactTrainGraph))
+     * and must not introduce new cities.
+     */
+    FastestPathTable refreshed(CompactTrainGraph previous, CompactTrainGraph updated, int... departureCities) {
+        FastestPathTable copy = new FastestPathTable(this, updated);
+        // A changed edge can be the 1st, 2nd or 3rd leg of a path, so its source is at most
+        // 2 edges away; removed edges are only visible in the previous graph
+        boolean[] stale = new boolean[n];
+        for (int city : departureCities) {
+            for (CompactTrainGraph g : new CompactTrainGraph[] { previous, updated }) {
+                byte[] hops = g.hopsTo(city);
+                for (int s = 0; s < n; s++) {
+                    if (hops[s] <= MAX_EDGES - 1) stale[s] = true;
+                }
+            }
+        }
+        for (int s = 0; s < n; s++) {
+            if (stale[s]) copy.computeRow(s);
+        }
+        return copy;
+    }
+
+    // ---------- Row computation ----------
+
+    private void computeRow(int from) {
+        CompactTrainGraph g = graph;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            Arrays.fill(duration[slot], from * n, from * n + n, NONE);
+            Arrays.fill(legs[slot], from * n * MAX_EDGES, (from * n + n) * MAX_EDGES, null);
+        }
+        boolean[] visited = new boolean[n];
+        int[] path = new int[MAX_EDGES];
+        visited[from] = true;
+        dfs(g, from, from, 0, 0, 0, 0x7F, visited, path);
+    }
+
+    private void dfs(CompactTrainGraph g, int from, int current, int depth,
+                     long startAbs, long currentAbs, int commonDays,
+                     boolean[] visited, int[] path) {
+        for (int e = g.firstEdge(current), end = g.endEdge(current); e < end; e++) {
+            int next = g.target(e);
+            if (visited[next]) continue;
+
+            long start = (depth == 0) ? g.departureMinute(e) : startAbs;
+            long depAbs = (depth == 0) ? start
+                    : CompactTrainGraph.alignToNextOrSame(currentAbs, g.departureMinute(e));
+            long arrAbs = depAbs + g.durationMinutes(e);
+            int days = commonDays & g.dayMask(e);
+
+            path[depth] = e;
+            offer(g, from, next, (int) (arrAbs - start), days, path, depth + 1);
+
+            if (depth + 1 < MAX_EDGES) {
+                visited[next] = true;
+                dfs(g, from, next, depth + 1, start, arrAbs, days, visited, path);
+                visited[next] = false;
+            }
+        }
+    }
+
+    private void offer(CompactTrainGraph g, int from, int to, int minutes, int days, int[] path, int length) {
+        int pair = from * n + to;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (slot != ANY_DAY && (days & (1 << slot)) == 0) continue;
+            if (minutes >= duration[slot][pair]) continue;
+            duration[slot][pair] = minutes;
+            int base = pair * MAX_EDGES;
+            for (int i = 0; i < MAX_EDGES; i++) {
+                legs[slot][base + i] = (i < length) ? g.connection(path[i]) : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out ids from a named row of the IdSequence table, hi/lo style.
+ * - A block of blockSize ids is reserved with one atomic UPDATE, so several planner
+ *   instances sharing the database never get the same id
+ * - Ids of the current block are handed out with an AtomicLong, without locking or
+ *   going to the database; only the thread that finds the block used up reserves the next
+ * - If the next block cannot be reserved, nextId() throws: ids are never made up
+ *   locally, as another instance could hand out the same ones. The next call tries
+ *   the database again
+ *
+ * Ids are increasing within a process but not across processes, and ids of a block
+ * that is not used up before the process stops are skipped.
+ */
+final class IdAllocator {
+
+    private static final class Block {
+        final AtomicLong next;
+        final long end; // exclusive
+
+        Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+
+    private final String name;
+    private final int blockSize;
+    private volatile Block block = new Block(0, 0);
+
+    IdAllocator(String name, int blockSize) {
+        this.name = name;
+        this.blockSize = blockSize;
+    }
+
+    /** Next id; throws IllegalStateException if no block of ids could be reserved. */
+    long nextId() {
+        while (true) {
+            Block b = block;
+            long id = b.next.getAndIncrement();
+            if (id < b.end) return id;
+            synchronized (this) {
+                if (block == b) block = reserve();
+            }
+        }
+    }
+
+    int nextIntId() {
+        return Math.toIntExact(nextId());
+    }
+
+    private Block reserve() {
+        try {
+            long end = reserveInDB();
+            return new Block(end - blockSize, end);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not reserve " + name + " ids: " + e.getMessage(), e);
+        }
+    }
+
+    // Moves next_value forward by blockSize and returns the new value; the ids
+    // [new - blockSize, new) are ours. LAST_INSERT_ID(expr) hands the updated value
+    // back to this connection without a second read of the row.
+    private long reserveInDB() throws SQLException {
+        String update = "UPDATE IdSequence SET next_value = LAST_INSERT_ID(next_value + ?) WHERE name = ?";
+        try (Connection conn = DBManager.getConnection()) {
+            if (conn == null) throw new SQLException("no database connection");
+            try (PreparedStatement stmt = conn.prepareStatement(update)) {
+                stmt.setInt(1, blockSize);
+                stmt.setString(2, name);
+                if (stmt.executeUpdate() == 0) {
+                    // Sequence not created yet: start it at 1
+                    try (PreparedStatement insert = conn.prepareStatement(
+                            "INSERT IGNORE INTO IdSequence (name, next_value) VALUES (?, 1)")) {
+                        insert.setString(1, name);
+                        insert.executeUpdate();
+                    }
+                    if (stmt.executeUpdate() == 0) throw new SQLException("IdSequence row " + name + " is missing");
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT LAST_INSERT_ID()");
+                 ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) throw new SQLException("Could not read reserved " + name + " ids");
+                return rs.getLong(1);
+            }
+        }
+    }
+}
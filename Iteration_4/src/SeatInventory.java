@@ -0,0 +1,281 @@
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Seats sold per (connection, date, class).
+ * - Each train has the same number of seats per class on every date it runs
+ * - The SeatInventory table holds the counts for every planner instance; takeInDB()
+ *   adds a booking's seats with a conditional UPDATE per train, inside the caller's
+ *   transaction, and fails with SoldOutException if any train is full
+ * - In front of it, reserve() / release() keep the seats sold by this instance in
+ *   memory, so sessions of one instance competing for the same trains are turned away
+ *   without going to the database. reserve() takes the seats on every train of a trip,
+ *   or on none of them: the lock stripes of the trains are taken in ascending order,
+ *   so bookings sharing trains cannot deadlock, and all trains are checked first
+ * - In-memory counters are created on first booking, so memory grows with what is booked
+ */
+final class SeatInventory {
+
+    enum SeatClass { FIRST, SECOND }
+
+    /** A train of the booking has no seats left in the database. */
+    static final class SoldOutException extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        SoldOutException(String message) {
+            super(message);
+        }
+    }
+
+    private static final int STRIPES = 64; // power of two
+
+    private final int firstClassSeats;
+    private final int secondClassSeats;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    // Seats sold, by key(); an entry is only read or changed under its stripe lock
+    private final ConcurrentHashMap<String, int[]> sold = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final long startedAt = System.nanoTime();
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong confirmed = new AtomicLong();
+    private final AtomicLong soldOut = new AtomicLong();
+    private final AtomicLong seatsSold = new AtomicLong();
+    private final AtomicLong totalLockWaitNanos = new AtomicLong();
+    private final AtomicLong maxLockWaitNanos = new AtomicLong();
+
+    SeatInventory(int firstClassSeats, int secondClassSeats) {
+        this.firstClassSeats = firstClassSeats;
+        this.secondClassSeats = secondClassSeats;
+        for (int i = 0; i < STRIPES; i++) locks[i] = new ReentrantLock();
+    }
+
+    /**
+     * Takes {@code seats} seats in {@code seatClass} on every train of the path, the first
+     * one leaving on {@code date}. Returns false, taking nothing, if any train is full.
+     */
+    boolean reserve(TrainGraph.PathResult path, LocalDate date, SeatClass seatClass, int seats) {
+        attempts.incrementAndGet();
+        String[] keys = keys(path, date, seatClass);
+        int capacity = capacity(seatClass);
+
+        long start = System.nanoTime();
+        int[] stripes = stripes(keys);
+        for (int s : stripes) locks[s].lock();
+        long waited = System.nanoTime() - start;
+        totalLockWaitNanos.addAndGet(waited);
+        maxLockWaitNanos.accumulateAndGet(waited, Math::max);
+        try {
+            for (String key : keys) {
+                int[] count = sold.get(key);
+                if ((count == null ? 0 : count[0]) + seats > capacity) {
+                    soldOut.incrementAndGet();
+                    return false;
+                }
+            }
+            for (String key : keys) sold.computeIfAbsent(key, k -> new int[1])[0] += seats;
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) locks[stripes[i]].unlock();
+        }
+        confirmed.incrementAndGet();
+        seatsSold.addAndGet(seats);
+        return true;
+    }
+
+    /** Gives back seats taken by reserve(), e.g. when the booking could not be saved. */
+    void release(TrainGraph.PathResult path, LocalDate date, SeatClass seatClass, int seats) {
+        release(routeIds(path), legDates(path, date), seatClass, seats);
+    }
+
+    /** Same as release(path, date, ...), for the trains (route ids) and the dates they leave on. */
+    void release(List<String> routeIds, List<LocalDate> dates, SeatClass seatClass, int seats) {
+        String[] keys = keys(routeIds, dates, seatClass);
+        int[] stripes = stripes(keys);
+        for (int s : stripes) locks[s].lock();
+        try {
+            for (String key : keys) {
+                int[] count = sold.get(key);
+                if (count != null) count[0] = Math.max(0, count[0] - seats);
+            }
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) locks[stripes[i]].unlock();
+        }
+        confirmed.decrementAndGet();
+        seatsSold.addAndGet(-seats);
+    }
+
+    // ---------- Database ----------
+
+    /**
+     * Adds the seats to the SeatInventory rows of the trains (route ids, each with the date
+     * it leaves on), on conn and in its transaction. Throws SoldOutException if a train
+     * has fewer than {@code seats} seats left; the caller then rolls back.
+     */
+    void takeInDB(Connection conn, List<String> routeIds, List<LocalDate> dates, SeatClass seatClass,
+                  int seats) throws SQLException {
+        List<Integer> order = sortedLegs(routeIds, dates);
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT IGNORE INTO SeatInventory (route_id, travel_date, seat_class, sold) VALUES (?, ?, ?, 0)")) {
+            for (int i : order) {
+                setKey(insert, 1, routeIds.get(i), dates.get(i), seatClass);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        // Rows in a fixed order, so transactions booking the same trains do not deadlock
+        String update = "UPDATE SeatInventory SET sold = sold + ? "
+                      + "WHERE route_id = ? AND travel_date = ? AND seat_class = ? AND sold + ? <= ?";
+        try (PreparedStatement stmt = conn.prepareStatement(update)) {
+            for (int i : order) {
+                stmt.setInt(1, seats);
+                setKey(stmt, 2, routeIds.get(i), dates.get(i), seatClass);
+                stmt.setInt(5, seats);
+                stmt.setInt(6, capacity(seatClass));
+                if (stmt.executeUpdate() == 0) {
+                    throw new SoldOutException("Train " + routeIds.get(i) + " on " + dates.get(i) + " has fewer than "
+                            + seats + " " + seatClass.name().toLowerCase() + " class seat(s) left");
+                }
+            }
+        }
+    }
+
+    /** Takes back seats added by takeInDB, on conn and in its transaction. */
+    void giveBackInDB(Connection conn, List<String> routeIds, List<LocalDate> dates, SeatClass seatClass,
+                      int seats) throws SQLException {
+        String update = "UPDATE SeatInventory SET sold = GREATEST(sold - ?, 0) "
+                      + "WHERE route_id = ? AND travel_date = ? AND seat_class = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(update)) {
+            for (int i : sortedLegs(routeIds, dates)) {
+                stmt.setInt(1, seats);
+                setKey(stmt, 2, routeIds.get(i), dates.get(i), seatClass);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Seats still free in {@code seatClass} on the fullest train of the path, as counted by
+     * the database; from this instance's counts if the database cannot be read.
+     */
+    int seatsLeftInDB(TrainGraph.PathResult path, LocalDate date, SeatClass seatClass) {
+        int[] offsets = path.departureDayOffsets();
+        String sql = "SELECT sold FROM SeatInventory WHERE route_id = ? AND travel_date = ? AND seat_class = ?";
+        try (Connection conn = DBManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int left = capacity(seatClass);
+            for (int i = 0; i < offsets.length; i++) {
+                setKey(stmt, 1, path.edges.get(i).getRouteID(), date.plusDays(offsets[i]), seatClass);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) left = Math.min(left, capacity(seatClass) - rs.getInt(1));
+                }
+            }
+            return Math.max(0, left);
+        } catch (SQLException | RuntimeException e) {
+            System.out.println("Could not read seat counts: " + e.getMessage());
+            return seatsLeft(path, date, seatClass);
+        }
+    }
+
+    private static void setKey(PreparedStatement stmt, int first, String routeId, LocalDate date,
+                               SeatClass seatClass) throws SQLException {
+        stmt.setString(first, routeId);
+        stmt.setDate(first + 1, Date.valueOf(date));
+        stmt.setString(first + 2, seatClass.name());
+    }
+
+    // Indexes of the legs ordered by (route id, date)
+    private static List<Integer> sortedLegs(List<String> routeIds, List<LocalDate> dates) {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < routeIds.size(); i++) order.add(i);
+        order.sort((a, b) -> {
+            int c = routeIds.get(a).compareTo(routeIds.get(b));
+            return (c != 0) ? c : dates.get(a).compareTo(dates.get(b));
+        });
+        return order;
+    }
+
+    /** Seats still free in {@code seatClass} on the fullest train of the path, by this instance's counts. */
+    int seatsLeft(TrainGraph.PathResult path, LocalDate date, SeatClass seatClass) {
+        int left = capacity(seatClass);
+        for (String key : keys(path, date, seatClass)) {
+            ReentrantLock lock = locks[stripe(key)];
+            lock.lock();
+            try {
+                int[] count = sold.get(key);
+                if (count != null) left = Math.min(left, capacity(seatClass) - count[0]);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return Math.max(0, left);
+    }
+
+    /** Booking counts and throughput, for logging. */
+    String stats() {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startedAt) / 1e9);
+        long count = attempts.get();
+        return String.format(
+                "attempts=%d confirmed=%d soldOut=%d seats=%d throughput=%.1f bookings/s avgLockWait=%.3fms maxLockWait=%.3fms",
+                count, confirmed.get(), soldOut.get(), seatsSold.get(), confirmed.get() / seconds,
+                count == 0 ? 0.0 : totalLockWaitNanos.get() / 1e6 / count,
+                maxLockWaitNanos.get() / 1e6);
+    }
+
+    private int capacity(SeatClass seatClass) {
+        return (seatClass == SeatClass.FIRST) ? firstClassSeats : secondClassSeats;
+    }
+
+    /** The date each train of the path leaves on, the first one leaving on {@code date}. */
+    static List<LocalDate> legDates(TrainGraph.PathResult path, LocalDate date) {
+        List<LocalDate> dates = new ArrayList<>();
+        for (int offset : path.departureDayOffsets()) dates.add(date.plusDays(offset));
+        return dates;
+    }
+
+    // One key per train: its route id, the date it leaves on and the class
+    private static String[] keys(TrainGraph.PathResult path, LocalDate date, SeatClass seatClass) {
+        return keys(routeIds(path), legDates(path, date), seatClass);
+    }
+
+    private static String[] keys(List<String> routeIds, List<LocalDate> dates, SeatClass seatClass) {
+        String[] keys = new String[routeIds.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = routeIds.get(i) + "|" + dates.get(i) + "|" + seatClass;
+        }
+        return keys;
+    }
+
+    private static List<String> routeIds(TrainGraph.PathResult path) {
+        List<String> ids = new ArrayList<>();
+        for (TrainConnection tc : path.edges) ids.add(tc.getRouteID());
+        return ids;
+    }
+
+    private static int stripe(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    // Distinct stripes of the keys, ascending: the order locks are taken in
+    private static int[] stripes(String[] keys) {
+        int[] stripes = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) stripes[i] = stripe(keys[i]);
+        Arrays.sort(stripes);
+        int n = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            if (n == 0 || stripes[n - 1] != stripes[i]) stripes[n++] = stripes[i];
+        }
+        return Arrays.copyOf(stripes, n);
+    }
+}
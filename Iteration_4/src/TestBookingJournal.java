@@ -0,0 +1,202 @@
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Test script for the write-behind booking journal (encoding, replay after a crash, compaction).
+ * Nothing here touches the database.
+ */
+public class TestBookingJournal {
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("==============================================");
+        System.out.println("BOOKING JOURNAL TEST SUITE");
+        System.out.println("==============================================\n");
+
+        testScenario1_ReplayReturnsOutstandingEntries();
+        testScenario2_CompactionKeepsOutstandingEntries();
+
+        System.out.println("\n==============================================");
+        System.out.println(failures == 0 ? "ALL TESTS PASSED" : failures + " CHECK(S) FAILED");
+        System.out.println("==============================================");
+        if (failures > 0) System.exit(1);
+    }
+
+    /**
+     * Scenario 1: Replay returns the bookings without a "D" line, fields intact, and drops
+     * a last line cut short by a crash.
+     */
+    private static void testScenario1_ReplayReturnsOutstandingEntries() throws Exception {
+        System.out.println("TEST 1: Replay after a crash");
+        System.out.println("-----------------------------");
+
+        CustomerCatalog.PendingBooking stored = booking("Paris", "Lyon", "Ann", "ID0", null, false);
+        CustomerCatalog.PendingBooking escaped = booking("Saint\tDenis", "Back\\slash", "Anne\nMarie", "ID\t1",
+            SeatInventory.SeatClass.FIRST, true);
+        CustomerCatalog.PendingBooking alsoStored = booking("Rome", "Milan", "Bo", "ID3",
+            SeatInventory.SeatClass.SECOND, false);
+        CustomerCatalog.PendingBooking cut = booking("Nice", "Lyon", "Cy", "ID9",
+            SeatInventory.SeatClass.SECOND, true);
+
+        // Cut just before the seat fields, where it would still decode as an older entry
+        String cutLine = "B 9\t" + encode(cut);
+        cutLine = cutLine.substring(0, cutLine.indexOf("\tSECOND\t"));
+        String legacy = "B 7\tParis\tLyon\tParis → Lyon (Mon 08:00)\tR1|R2\t0\t1\tAl\tLee\t30\tID7\tTICKET-7";
+
+        String text = "B 0\t" + encode(stored) + "\n"
+                    + "B 1\t" + encode(escaped) + "\n"
+                    + "D 0\n"
+                    + legacy + "\n"
+                    + "B 3\t" + encode(alsoStored) + "\n"
+                    + "D 3\n"
+                    + cutLine;
+        Path journal = Files.createTempFile("bookings", ".journal");
+        try {
+            Files.writeString(journal, text, StandardCharsets.UTF_8);
+            List<Object> entries = replay(journal);
+
+            List<Long> seqs = new ArrayList<>();
+            for (Object e : entries) seqs.add((Long) field(e, "seq"));
+            check(seqs.equals(List.of(1L, 7L)), "outstanding entries in journal order: " + seqs);
+
+            CustomerCatalog.PendingBooking first = (CustomerCatalog.PendingBooking) field(entries.get(0), "booking");
+            check(describe(first).equals(describe(escaped)), "tabs, newlines and backslashes in fields survive");
+            check(first.seatClass == SeatInventory.SeatClass.FIRST && first.seatsHeld
+                    && first.legDates.equals(escaped.legDates),
+                "seat class, leg dates and held seats are read back");
+            check(first.replayed, "replayed entries are marked as such");
+
+            CustomerCatalog.PendingBooking old = (CustomerCatalog.PendingBooking) field(entries.get(1), "booking");
+            check(old.departureDay == 0 && old.routeIds.equals(List.of("R1", "R2")) && old.seatClass == null
+                    && old.legDates.isEmpty() && !old.seatsHeld && old.tickets.equals(List.of("TICKET-7")),
+                "an entry from before departure days and seats decodes with neither");
+
+            String after = Files.readString(journal, StandardCharsets.UTF_8);
+            check(after.endsWith("D 3\n") && !after.contains("B 9"),
+                "the incomplete last line is dropped from the file");
+        } finally {
+            Files.deleteIfExists(journal);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Scenario 2: Compaction rewrites the journal with only the entries not marked done.
+     */
+    private static void testScenario2_CompactionKeepsOutstandingEntries() throws Exception {
+        System.out.println("TEST 2: Journal compaction");
+        System.out.println("---------------------------");
+
+        Path journal = Files.createTempFile("bookings", ".journal");
+        Files.delete(journal);
+        try {
+            // Not started: nothing drains the queue, entries are marked done by hand
+            Constructor<BookingWriter> ctor = BookingWriter.class.getDeclaredConstructor(
+                Path.class, int.class, int.class, long.class);
+            ctor.setAccessible(true);
+            BookingWriter writer = ctor.newInstance(journal, 100, 10, 1000L);
+            List<CustomerCatalog.PendingBooking> submitted = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                CustomerCatalog.PendingBooking b = booking("City" + i, "Lyon", "P" + i, "ID" + i,
+                    SeatInventory.SeatClass.FIRST, true);
+                writer.submit(b);
+                submitted.add(b);
+            }
+            Collection<?> queue = (Collection<?>) field(writer, "queue");
+            List<Object> entries = new ArrayList<>(queue);
+
+            Method markDone = BookingWriter.class.getDeclaredMethod("markDone", List.class);
+            markDone.setAccessible(true);
+            markDone.invoke(writer, List.of(entries.get(0), entries.get(2)));
+            check(Files.readString(journal, StandardCharsets.UTF_8).contains("D 2\n"),
+                "stored entries get a D line");
+
+            Method compact = BookingWriter.class.getDeclaredMethod("compact");
+            compact.setAccessible(true);
+            synchronized (writer) {
+                compact.invoke(writer);
+            }
+            String text = Files.readString(journal, StandardCharsets.UTF_8);
+            check(!text.contains("D ") && text.startsWith("B 1\t") && text.contains("\nB 3\t")
+                    && text.split("\n").length == 2,
+                "the compacted journal holds only the two outstanding B lines");
+
+            List<Object> replayed = replay(journal);
+            check(replayed.size() == 2
+                    && describe((CustomerCatalog.PendingBooking) field(replayed.get(0), "booking")).equals(describe(submitted.get(1)))
+                    && describe((CustomerCatalog.PendingBooking) field(replayed.get(1), "booking")).equals(describe(submitted.get(3))),
+                "replaying the compacted journal gives the outstanding bookings");
+            ((java.nio.channels.FileChannel) field(writer, "journal")).close();
+
+            BookingWriter reopened = ctor.newInstance(journal, 100, 10, 1000L);
+            check((Long) field(reopened, "nextSeq") == 4L, "a writer reopening the journal continues after seq 3");
+            ((java.nio.channels.FileChannel) field(reopened, "journal")).close();
+        } finally {
+            Files.deleteIfExists(journal);
+        }
+        System.out.println();
+    }
+
+    // Helper methods
+
+    private static CustomerCatalog.PendingBooking booking(String origin, String destination, String firstName,
+                                                          String id, SeatInventory.SeatClass seatClass,
+                                                          boolean seatsHeld) {
+        List<CustomerCatalog.PendingBooking.Passenger> travellers = List.of(
+            new CustomerCatalog.PendingBooking.Passenger(firstName, "Doe", 30, id),
+            new CustomerCatalog.PendingBooking.Passenger("Kid", "Doe", 8, id + "-2"));
+        List<CustomerCatalog.PendingBooking.Passenger> newCustomers = List.of(travellers.get(1));
+        List<LocalDate> legDates = seatClass == null ? new ArrayList<>()
+            : List.of(LocalDate.of(2030, 1, 7), LocalDate.of(2030, 1, 8));
+        return new CustomerCatalog.PendingBooking(origin, destination, 1, List.of("R1", "R2"),
+            newCustomers, travellers, List.of("TICKET-1", "TICKET-2"), false, seatClass, legDates, seatsHeld);
+    }
+
+    // Every journaled field of a booking
+    private static String describe(CustomerCatalog.PendingBooking b) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(b.origin).append('|').append(b.destination).append('|').append(b.departureDay)
+          .append('|').append(b.routeIds).append('|').append(b.tickets)
+          .append('|').append(b.seatClass).append('|').append(b.legDates).append('|').append(b.seatsHeld);
+        for (List<CustomerCatalog.PendingBooking.Passenger> ps : List.of(b.newCustomers, b.travellers)) {
+            sb.append("|[");
+            for (CustomerCatalog.PendingBooking.Passenger p : ps) {
+                sb.append(p.firstName).append(',').append(p.lastName).append(',').append(p.age)
+                  .append(',').append(p.id).append(';');
+            }
+            sb.append(']');
+        }
+        return sb.toString();
+    }
+
+    private static String encode(CustomerCatalog.PendingBooking b) throws Exception {
+        Method m = BookingWriter.class.getDeclaredMethod("encode", CustomerCatalog.PendingBooking.class);
+        m.setAccessible(true);
+        return (String) m.invoke(null, b);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> replay(Path journal) throws Exception {
+        Method m = BookingWriter.class.getDeclaredMethod("replay", Path.class);
+        m.setAccessible(true);
+        return (List<Object>) m.invoke(null, journal);
+    }
+
+    private static Object field(Object target, String name) throws Exception {
+        Field f = target.getClass().getDeclaredField(name);
+        f.setAccessible(true);
+        return f.get(target);
+    }
+
+    private static void check(boolean ok, String label) {
+        System.out.println((ok ? "✓ " : "✗ FAILED: ") + label);
+        if (!ok) failures++;
+    }
+}
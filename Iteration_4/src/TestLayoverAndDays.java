@@ -1,3 +1,4 @@
+import java.time.DayOfWeek;
 import java.time.Duration;
 import java.time.LocalTime;
 import java.util.*;
@@ -19,6 +20,8 @@ public class TestLayoverAndDays {
         testScenario4_MultiDayJourney();
         testScenario5_WeekendWrap();
         testScenario6_LayoverFiltering();
+        testScenario7_DayMaskParsing();
+        testScenario8_RunsOnAny();
 
         System.out.println("\n==============================================");
         System.out.println("ALL TESTS COMPLETED");
@@ -260,8 +263,83 @@ public class TestLayoverAndDays {
         System.out.println();
     }
 
+    /**
+     * Scenario 7: Days of operation are parsed into a 7-bit mask (Monday = bit 0)
+     */
+    private static void testScenario7_DayMaskParsing() {
+        System.out.println("TEST 7: Day Mask Parsing");
+        System.out.println("-------------------------");
+
+        checkMask("Daily", TrainConnection.ALL_DAYS);
+        checkMask("daily", TrainConnection.ALL_DAYS);
+        checkMask("Mon-Fri", 0b0011111);
+        checkMask("Fri-Mon", 0b1110001);                 // wraps over the weekend
+        checkMask("Sun-Sun", 0b1000000);
+        checkMask("Mon,Wed,Fri", 0b0010101);
+        checkMask("\"Sat, Sun\"", 0b1100000);           // quotes and spaces
+        checkMask("Mon-Tue,Sat-Sun", 0b1100011);         // ranges in a list
+        checkMask("", 0);
+        checkMask("Holidays", 0);
+        checkMask("Mon-Xyz", 0);                         // a range with an unknown end is dropped
+        checkMask("Funday,Tue", 0b0000010);              // unknown tokens are ignored
+
+        TrainConnection tc = createConnection("D001", "CityA", "CityB",
+            "08:00", "09:00", 0, "IC", "Fri-Mon", 10, 5);
+        check(tc.operatingDaysSet().equals(EnumSet.of(DayOfWeek.FRIDAY, DayOfWeek.SATURDAY,
+                DayOfWeek.SUNDAY, DayOfWeek.MONDAY)) && !tc.runsOn(DayOfWeek.TUESDAY),
+            "Fri-Mon runs Friday to Monday, not Tuesday");
+        System.out.println();
+    }
+
+    /**
+     * Scenario 8: runsOnAny is an AND of the train's mask and the selected days
+     */
+    private static void testScenario8_RunsOnAny() {
+        System.out.println("TEST 8: runsOnAny Day Filter");
+        System.out.println("-----------------------------");
+
+        String[] specs = { "Daily", "Mon-Fri", "Fri-Mon", "Sat,Sun", "Wed", "Junk" };
+        boolean allAgree = true;
+        for (String spec : specs) {
+            TrainConnection tc = createConnection("D002", "CityA", "CityB",
+                "08:00", "09:00", 0, "IC", spec, 10, 5);
+            // Every selection of days, compared with checking the days one by one
+            for (int selected = 0; selected <= TrainConnection.ALL_DAYS; selected++) {
+                boolean expected = false;
+                for (DayOfWeek d : DayOfWeek.values()) {
+                    if ((selected & TrainConnection.dayBit(d)) != 0 && tc.runsOn(d)) expected = true;
+                }
+                if (tc.runsOnAny(selected) != expected) {
+                    allAgree = false;
+                    System.out.println("  mismatch for " + spec + " and mask " + Integer.toBinaryString(selected));
+                }
+            }
+        }
+        check(allAgree, "runsOnAny matches a day-by-day check for all 128 selections");
+
+        TrainConnection weekend = createConnection("D003", "CityA", "CityB",
+            "08:00", "09:00", 0, "IC", "Sat,Sun", 10, 5);
+        check(weekend.runsOnAny(TrainConnection.dayMaskOf(EnumSet.of(DayOfWeek.FRIDAY, DayOfWeek.SUNDAY))),
+            "Sat,Sun train matches a Fri/Sun selection");
+        check(!weekend.runsOnAny(TrainConnection.dayMaskOf(EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.FRIDAY))),
+            "Sat,Sun train does not match a Mon/Fri selection");
+        check(!weekend.runsOnAny(0), "an empty selection matches nothing (the planner skips the filter instead)");
+        System.out.println();
+    }
+
     // Helper methods
 
+    private static void checkMask(String spec, int expected) {
+        TrainConnection tc = createConnection("D000", "CityA", "CityB",
+            "08:00", "09:00", 0, "IC", spec, 10, 5);
+        check(tc.dayMask() == expected,
+            "\"" + spec + "\" -> " + Integer.toBinaryString(tc.dayMask()) + " (expected " + Integer.toBinaryString(expected) + ")");
+    }
+
+    private static void check(boolean ok, String label) {
+        System.out.println((ok ? "✓ " : "✗ FAILED: ") + label);
+    }
+
     private static TrainConnection createConnection(String routeID, String depCity, String arrCity,
                                                    String depTime, String arrTime, int dayOffset,
                                                    String trainType, String daysOfOperation,
@@ -0,0 +1,492 @@
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Test script for the TrainGraph search modes (earliest arrival and friends).
+ */
+public class TestRouteSearch {
+
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+        System.out.println("==============================================");
+        System.out.println("ROUTE SEARCH TEST SUITE");
+        System.out.println("==============================================\n");
+
+        testScenario1_EarliestArrivalPicksFastestChain();
+        testScenario2_EarliestArrivalTransferBound();
+        testScenario3_EarliestArrivalOperatingDays();
+        testScenario4_ParetoDropsDominatedTrips();
+        testScenario5_BidirectionalMatchesDfs();
+        testScenario6_FastestPathTableRefresh();
+        testScenario7_ParallelAllPairsMatchesSequential();
+        testScenario8_LazyPathStreams();
+        testScenario9_TopKPaths();
+        testScenario10_TopKTiesByDuration();
+        testScenario11_ReloadByRouteId();
+
+        System.out.println("\n==============================================");
+        System.out.println(failures == 0 ? "ALL TESTS PASSED" : failures + " CHECK(S) FAILED");
+        System.out.println("==============================================");
+        if (failures > 0) System.exit(1);
+    }
+
+    /**
+     * Scenario 1: The direct train leaves later and is slower, so the chain wins unless it is missed.
+     */
+    private static void testScenario1_EarliestArrivalPicksFastestChain() {
+        System.out.println("TEST 1: Earliest arrival picks the fastest chain");
+        System.out.println("-------------------------------------------------");
+
+        List<TrainConnection> connections = new ArrayList<>();
+        connections.add(createConnection("SLOW01", "Paris", "Marseille",
+            "09:00", "17:00", 0, "IC", "Daily", 60, 40));
+        connections.add(createConnection("TGV001", "Paris", "Lyon",
+            "08:00", "10:00", 0, "TGV", "Daily", 50, 30));
+        connections.add(createConnection("TGV002", "Lyon", "Marseille",
+            "10:30", "12:00", 0, "TGV", "Daily", 40, 25));
+
+        TrainGraph g = new TrainGraph(connections);
+        TrainGraph.PathResult p = g.earliestArrival("Paris", "Marseille",
+            DayOfWeek.MONDAY, LocalTime.of(6, 0), tc -> true);
+
+        check(p != null, "a trip is found");
+        if (p != null) {
+            System.out.println(p);
+            check(routeIds(p).equals(List.of("TGV001", "TGV002")), "uses the TGV chain via Lyon");
+            check(p.totalDuration.equals(Duration.ofHours(4)), "total duration is 4h");
+        }
+
+        TrainGraph.PathResult late = g.earliestArrival("Paris", "Marseille",
+            DayOfWeek.MONDAY, LocalTime.of(8, 30), tc -> true);
+        check(late != null && late.edges.get(0).getRouteID().equals("SLOW01"),
+            "leaving after 08:30 misses the chain and takes the direct train");
+        System.out.println();
+    }
+
+    /**
+     * Scenario 2: The only way to arrive is with two connections; a lower bound finds nothing.
+     */
+    private static void testScenario2_EarliestArrivalTransferBound() {
+        System.out.println("TEST 2: Transfer bound is respected");
+        System.out.println("------------------------------------");
+
+        List<TrainConnection> connections = new ArrayList<>();
+        connections.add(createConnection("IC001", "CityA", "CityB",
+            "08:00", "09:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("IC002", "CityB", "CityC",
+            "09:30", "10:30", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("IC003", "CityC", "CityD",
+            "11:00", "12:00", 0, "IC", "Daily", 10, 5));
+
+        TrainGraph g = new TrainGraph(connections);
+        TrainGraph.PathResult p2 = g.earliestArrival("CityA", "CityD",
+            DayOfWeek.WEDNESDAY, LocalTime.of(0, 0), 2, tc -> true);
+        TrainGraph.PathResult p1 = g.earliestArrival("CityA", "CityD",
+            DayOfWeek.WEDNESDAY, LocalTime.of(0, 0), 1, tc -> true);
+
+        check(p2 != null && p2.edges.size() == 3, "two connections allowed: 3-train trip found");
+        check(p1 == null, "one connection allowed: no trip");
+        System.out.println();
+    }
+
+    /**
+     * Scenario 3: The connecting train does not run on the arrival day, so the traveller waits.
+     */
+    private static void testScenario3_EarliestArrivalOperatingDays() {
+        System.out.println("TEST 3: Operating days are respected");
+        System.out.println("-------------------------------------");
+
+        List<TrainConnection> connections = new ArrayList<>();
+        connections.add(createConnection("FB001", "Rome", "Florence",
+            "08:00", "10:00", 0, "FrecciaRossa", "Fri", 50, 35));
+        connections.add(createConnection("FB002", "Florence", "Milan",
+            "11:00", "13:00", 0, "FrecciaRossa", "Sat,Sun", 55, 40));
+
+        TrainGraph g = new TrainGraph(connections);
+        TrainGraph.PathResult p = g.earliestArrival("Rome", "Milan",
+            DayOfWeek.FRIDAY, LocalTime.of(7, 0), tc -> true);
+
+        check(p != null, "a trip is found");
+        if (p != null) {
+            System.out.println(p);
+            check(p.totalDuration.equals(Duration.ofHours(29)), "waits overnight for Saturday's train (29h)");
+        }
+
+        TrainGraph.PathResult none = g.earliestArrival("Rome", "Milan",
+            DayOfWeek.FRIDAY, LocalTime.of(7, 0), tc -> !tc.getRouteID().equals("FB002"));
+        check(none == null, "edge filter excludes the only connection");
+        System.out.println();
+    }
+
+    /**
+     * Scenario 4: Of three trips, one is slower and dearer than another and must be dropped.
+     */
+    private static void testScenario4_ParetoDropsDominatedTrips() {
+        System.out.println("TEST 4: Pareto-optimal trips only");
+        System.out.println("----------------------------------");
+
+        List<TrainConnection> connections = new ArrayList<>();
+
+        // Direct: fast but expensive
+        connections.add(createConnection("IC005", "CityA", "CityC",
+            "09:00", "12:00", 0, "IC", "Daily", 90, 70));
+
+        // Via CityB: slow but cheap
+        connections.add(createConnection("IC001", "CityA", "CityB",
+            "08:00", "10:00", 0, "IC", "Daily", 20, 10));
+        connections.add(createConnection("IC002", "CityB", "CityC",
+            "11:00", "13:00", 0, "IC", "Daily", 20, 10));
+
+        // Via CityD: slower and dearer than via CityB
+        connections.add(createConnection("IC003", "CityA", "CityD",
+            "08:00", "10:00", 0, "IC", "Daily", 30, 20));
+        connections.add(createConnection("IC004", "CityD", "CityC",
+            "16:00", "18:00", 0, "IC", "Daily", 30, 20));
+
+        TrainGraph g = new TrainGraph(connections);
+        List<TrainGraph.PathResult> front = g.paretoOptimalPaths("CityA", "CityC", tc -> true, p -> true);
+        for (TrainGraph.PathResult p : front) System.out.println(p);
+
+        check(front.size() == 2, "two trips remain");
+        check(front.size() == 2 && routeIds(front.get(0)).equals(List.of("IC005")), "direct trip first (fastest)");
+        check(front.size() == 2 && routeIds(front.get(1)).equals(List.of("IC001", "IC002")), "cheap trip via CityB kept");
+
+        List<TrainGraph.PathResult> noDirect = g.paretoOptimalPaths("CityA", "CityC", tc -> true,
+            p -> p.edges.size() > 1);
+        check(noDirect.size() == 1 && routeIds(noDirect.get(0)).equals(List.of("IC001", "IC002")),
+            "path filter removes the direct trip before comparing");
+        System.out.println();
+    }
+
+    /**
+     * Scenario 5: Meet-in-the-middle search returns exactly the DFS paths, including 3-train ones.
+     */
+    private static void testScenario5_BidirectionalMatchesDfs() {
+        System.out.println("TEST 5: Bidirectional search matches DFS");
+        System.out.println("-----------------------------------------");
+
+        List<TrainConnection> connections = new ArrayList<>();
+        connections.add(createConnection("R1", "CityA", "CityD", "08:00", "09:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R2", "CityA", "CityB", "08:00", "09:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R3", "CityA", "CityB", "10:00", "11:00", 0, "ICE", "Daily", 10, 5));
+        connections.add(createConnection("R4", "CityB", "CityC", "12:00", "13:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R5", "CityC", "CityD", "14:00", "15:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R6", "CityB", "CityD", "12:00", "13:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R7", "CityC", "CityB", "14:00", "15:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R8", "CityD", "CityA", "16:00", "17:00", 0, "IC", "Daily", 10, 5));
+
+        TrainGraph g = new TrainGraph(connections);
+        for (String type : List.of("all", "IC")) {
+            java.util.function.Predicate<TrainConnection> filter =
+                tc -> type.equals("all") || tc.trainType.equals(type);
+            Set<List<String>> dfs = new HashSet<>();
+            Set<List<String>> bidi = new HashSet<>();
+            for (TrainGraph.PathResult p : g.pathsUpToTwoIntermediates("CityA", "CityD", filter)) dfs.add(routeIds(p));
+            for (TrainGraph.PathResult p : g.pathsUpToTwoIntermediatesBidirectional("CityA", "CityD", filter)) bidi.add(routeIds(p));
+            System.out.println("Filter " + type + ": " + bidi);
+            check(dfs.equals(bidi) && dfs.size() == (type.equals("all") ? 5 : 3),
+                "filter '" + type + "' gives the same " + dfs.size() + " paths");
+        }
+        System.out.println();
+    }
+
+    /**
+     * Scenario 6: Fastest-path lookups per day, and after adding / removing a connection.
+     */
+    private static void testScenario6_FastestPathTableRefresh() {
+        System.out.println("TEST 6: Fastest-path table and incremental refresh");
+        System.out.println("---------------------------------------------------");
+
+        List<TrainConnection> connections = new ArrayList<>();
+        connections.add(createConnection("IC001", "CityA", "CityB", "08:00", "10:00", 0, "IC", "Daily", 20, 10));
+        connections.add(createConnection("IC002", "CityB", "CityC", "11:00", "13:00", 0, "IC", "Daily", 20, 10));
+        connections.add(createConnection("IC005", "CityA", "CityC", "09:00", "12:00", 0, "IC", "Mon,Tue", 90, 70));
+
+        TrainGraph g = new TrainGraph(connections);
+        g.precomputeFastestPaths(false);
+
+        check(routeIds(g.fastestPath("CityA", "CityC", DayOfWeek.MONDAY)).equals(List.of("IC005")),
+            "Monday: direct train (3h)");
+        check(routeIds(g.fastestPath("CityA", "CityC", DayOfWeek.FRIDAY)).equals(List.of("IC001", "IC002")),
+            "Friday: direct train does not run, chain via CityB (5h)");
+
+        TrainConnection express = createConnection("EX001", "CityB", "CityC",
+            "10:15", "10:45", 0, "ICE", "Daily", 30, 20);
+        g.addConnection(express);
+        check(routeIds(g.fastestPath("CityA", "CityC", DayOfWeek.FRIDAY)).equals(List.of("IC001", "EX001")),
+            "after adding an express CityB -> CityC the Friday answer uses it");
+
+        g.removeConnection(express);
+        g.removeConnection(connections.get(1));
+        check(g.fastestPath("CityA", "CityC", DayOfWeek.FRIDAY) == null,
+            "after removing both CityB -> CityC trains there is no Friday trip");
+        check(g.fastestPathPerPairUpToTwoIntermediates().get("CityA").get("CityC") != null,
+            "the any-day table still has the direct trip");
+        System.out.println();
+    }
+
+    /**
+     * Scenario 7: The parallel all-pairs enumeration gives the same paths as the sequential one.
+     */
+    private static void testScenario7_ParallelAllPairsMatchesSequential() {
+        System.out.println("TEST 7: Parallel all-pairs enumeration");
+        System.out.println("---------------------------------------");
+
+        List<TrainConnection> connections = new ArrayList<>();
+        connections.add(createConnection("R1", "CityA", "CityD", "08:00", "09:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R2", "CityA", "CityB", "08:00", "09:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R3", "CityA", "CityB", "10:00", "11:00", 0, "ICE", "Daily", 10, 5));
+        connections.add(createConnection("R4", "CityB", "CityC", "12:00", "13:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R5", "CityC", "CityD", "14:00", "15:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R7", "CityC", "CityB", "14:00", "15:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R8", "CityD", "CityA", "16:00", "17:00", 0, "IC", "Daily", 10, 5));
+
+        TrainGraph g = new TrainGraph(connections);
+        java.util.function.Predicate<TrainConnection> filter = tc -> !tc.trainType.equals("ICE");
+        Map<String, Map<String, Set<List<String>>>> sequential = byRouteIds(g.allPathsUpToTwoIntermediates(filter));
+        Map<String, Map<String, Set<List<String>>>> parallel = byRouteIds(g.allPathsUpToTwoIntermediates(filter, 4));
+
+        System.out.println("Sources: " + parallel.keySet());
+        check(sequential.equals(parallel), "parallelism 4 gives the same paths for every pair");
+        System.out.println();
+    }
+
+    /**
+     * Scenario 8: Path streams produce the same paths lazily and stop early.
+     */
+    private static void testScenario8_LazyPathStreams() {
+        System.out.println("TEST 8: Lazy path streams");
+        System.out.println("--------------------------");
+
+        List<TrainConnection> connections = new ArrayList<>();
+        connections.add(createConnection("R1", "CityA", "CityD", "08:00", "09:00", 0, "IC", "Daily", 40, 30));
+        connections.add(createConnection("R2", "CityA", "CityB", "08:00", "09:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R3", "CityA", "CityB", "10:00", "11:00", 0, "ICE", "Daily", 15, 10));
+        connections.add(createConnection("R4", "CityB", "CityC", "12:00", "13:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R5", "CityC", "CityD", "14:00", "15:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R6", "CityB", "CityD", "12:00", "13:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R8", "CityD", "CityA", "16:00", "17:00", 0, "IC", "Daily", 10, 5));
+
+        TrainGraph g = new TrainGraph(connections);
+
+        Set<List<String>> listed = new HashSet<>();
+        Set<List<String>> streamed = new HashSet<>();
+        for (TrainGraph.PathResult p : g.pathsUpToTwoIntermediates("CityA", "CityD", tc -> true)) listed.add(routeIds(p));
+        g.streamPaths("CityA", "CityD", tc -> true).forEach(p -> streamed.add(routeIds(p)));
+        check(listed.equals(streamed), "from/to stream matches the list (" + streamed.size() + " paths)");
+
+        check(byRouteIds(g.allPathsUpToTwoIntermediates(tc -> true)).equals(
+                byRouteIds(g.streamPaths(tc -> true).collect(java.util.stream.Collectors.groupingBy(
+                    p -> p.from, java.util.stream.Collectors.groupingBy(p -> p.to))))),
+            "all-pairs stream matches allPathsUpToTwoIntermediates");
+
+        int[] pulled = {0};
+        long taken = g.streamPaths(tc -> { pulled[0]++; return true; }).limit(2).count();
+        check(taken == 2 && pulled[0] < connections.size(), "limit(2) stops the search early");
+
+        List<TrainGraph.PathResult> cheapest = TrainGraph.best(g.streamPaths("CityA", "CityD", tc -> true), 2,
+            Comparator.comparingInt((TrainGraph.PathResult p) -> secondClassPrice(p)));
+        check(cheapest.size() == 2 && secondClassPrice(cheapest.get(0)) == 10
+                && secondClassPrice(cheapest.get(1)) == 15,
+            "best(2) by second-class price keeps the two cheapest, sorted");
+        System.out.println();
+    }
+
+    /**
+     * Scenario 9: Top-K by duration and by price agree with sorting the full list.
+     */
+    private static void testScenario9_TopKPaths() {
+        System.out.println("TEST 9: Top-K paths");
+        System.out.println("--------------------");
+
+        List<TrainConnection> connections = new ArrayList<>();
+        connections.add(createConnection("R1", "CityA", "CityD", "08:00", "14:00", 0, "IC", "Daily", 40, 30));
+        connections.add(createConnection("R2", "CityA", "CityB", "08:00", "09:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R3", "CityA", "CityB", "10:00", "11:00", 0, "ICE", "Daily", 15, 10));
+        connections.add(createConnection("R4", "CityB", "CityC", "12:00", "13:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R5", "CityC", "CityD", "14:00", "15:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R6", "CityB", "CityD", "11:30", "12:30", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("R8", "CityD", "CityA", "16:00", "17:00", 0, "IC", "Daily", 10, 5));
+
+        TrainGraph g = new TrainGraph(connections);
+        List<TrainGraph.PathResult> all = g.pathsUpToTwoIntermediates("CityA", "CityD", tc -> true);
+
+        all.sort(Comparator.comparing((TrainGraph.PathResult p) -> p.totalDuration));
+        List<TrainGraph.PathResult> fastest = g.topPaths("CityA", "CityD", 2,
+            TrainGraph.PathOrder.DURATION, tc -> true, p -> true);
+        for (TrainGraph.PathResult p : fastest) System.out.println(p);
+        check(fastest.size() == 2
+                && fastest.get(0).totalDuration.equals(all.get(0).totalDuration)
+                && fastest.get(1).totalDuration.equals(all.get(1).totalDuration),
+            "2 fastest match the sorted list");
+
+        List<TrainGraph.PathResult> cheapest = g.topPaths("CityA", "CityD", 1,
+            TrainGraph.PathOrder.SECOND_CLASS_PRICE, tc -> true, p -> p.edges.size() > 2);
+        check(cheapest.size() == 1 && routeIds(cheapest.get(0)).equals(List.of("R2", "R4", "R5")),
+            "cheapest 3-train trip by second-class price");
+        System.out.println();
+    }
+
+    /**
+     * Scenario 10: Top-K breaks price ties by duration, even when the quicker trip is found last.
+     */
+    private static void testScenario10_TopKTiesByDuration() {
+        System.out.println("TEST 10: Top-K ties broken by duration");
+        System.out.println("---------------------------------------");
+
+        List<TrainConnection> connections = new ArrayList<>();
+        connections.add(createConnection("S1", "CityA", "CityD", "08:00", "14:00", 0, "IC", "Daily", 20, 10));
+        connections.add(createConnection("S2", "CityA", "CityC", "08:00", "09:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("S3", "CityC", "CityD", "09:30", "13:00", 0, "IC", "Daily", 10, 5));
+        connections.add(createConnection("F1", "CityA", "CityB", "08:00", "09:00", 0, "IC", "Daily", 20, 10));
+        connections.add(createConnection("F2", "CityB", "CityD", "09:30", "10:00", 0, "IC", "Daily", 0, 0));
+
+        TrainGraph g = new TrainGraph(connections);
+
+        // All three cost 10 in second class: F1+F2 takes 2h, S2+S3 5h, S1 6h
+        List<TrainGraph.PathResult> best = g.topPaths("CityA", "CityD", 1,
+            TrainGraph.PathOrder.SECOND_CLASS_PRICE, tc -> true, p -> true);
+        check(best.size() == 1 && routeIds(best.get(0)).equals(List.of("F1", "F2")),
+            "k=1: the quickest of the equally cheap trips");
+
+        List<TrainGraph.PathResult> two = g.topPaths("CityA", "CityD", 2,
+            TrainGraph.PathOrder.SECOND_CLASS_PRICE, tc -> true, p -> true);
+        for (TrainGraph.PathResult p : two) System.out.println(p);
+        check(two.size() == 2 && routeIds(two.get(0)).equals(List.of("F1", "F2"))
+                && routeIds(two.get(1)).equals(List.of("S2", "S3")),
+            "k=2: equally cheap trips ordered by duration, slowest evicted");
+        System.out.println();
+    }
+
+    /**
+     * Scenario 11: Reload diffs the timetable by route id and swaps it in at once.
+     */
+    private static void testScenario11_ReloadByRouteId() {
+        System.out.println("TEST 11: Timetable reload");
+        System.out.println("--------------------------");
+
+        List<TrainConnection> connections = new ArrayList<>();
+        connections.add(createConnection("IC001", "CityA", "CityB", "08:00", "10:00", 0, "IC", "Daily", 20, 10));
+        connections.add(createConnection("IC002", "CityB", "CityC", "11:00", "13:00", 0, "IC", "Daily", 20, 10));
+        connections.add(createConnection("IC005", "CityA", "CityC", "09:00", "12:00", 0, "IC", "Mon,Tue", 90, 70));
+        connections.add(createConnection("IC009", "CityC", "CityA", "15:00", "18:00", 0, "IC", "Daily", 30, 20));
+
+        TrainGraph g = new TrainGraph(connections);
+        g.precomputeFastestPaths(false);
+        check(routeIds(g.fastestPath("CityA", "CityC", DayOfWeek.MONDAY)).equals(List.of("IC005")),
+            "before: Monday fastest is the direct train");
+
+        // Bound to the timetable as it is now, consumed after the reload
+        java.util.stream.Stream<TrainGraph.PathResult> before = g.streamPaths("CityA", "CityC", tc -> true);
+
+        // IC001 and IC009 unchanged (new objects), IC002 faster, IC005 gone, IC010 new
+        List<TrainConnection> reloaded = new ArrayList<>();
+        reloaded.add(createConnection("IC001", "CityA", "CityB", "08:00", "10:00", 0, "IC", "Daily", 20, 10));
+        reloaded.add(createConnection("IC002", "CityB", "CityC", "10:30", "11:30", 0, "IC", "Daily", 20, 10));
+        reloaded.add(createConnection("IC009", "CityC", "CityA", "15:00", "18:00", 0, "IC", "Daily", 30, 20));
+        reloaded.add(createConnection("IC010", "CityA", "CityD", "07:00", "08:00", 0, "IC", "Daily", 10, 5));
+
+        TrainGraph.ReloadResult result = g.reload(reloaded);
+        System.out.println("Reload: " + result);
+        check(result.inserted == 1 && result.updated == 1 && result.deleted == 1 && result.unchanged == 2,
+            "1 added, 1 updated, 1 removed, 2 unchanged");
+        check(result.connections.get(0) == connections.get(0) && result.connections.get(1) == reloaded.get(1),
+            "unchanged routes keep their objects, updated ones are replaced");
+
+        check(g.getConnectionByRouteId("IC005") == null, "removed route is no longer found by id");
+        check(g.getConnectionByRouteId("IC010") == reloaded.get(3), "added route is found by id");
+        check(g.getConnectionByRouteId("IC002").departureTime.equals(LocalTime.parse("10:30")),
+            "updated route is found by id with its new times");
+        check(routeIds(g.fastestPath("CityA", "CityC", DayOfWeek.MONDAY)).equals(List.of("IC001", "IC002")),
+            "after: Monday fastest uses the updated chain (3h30)");
+        check(routeIds(g.fastestPath("CityA", "CityD", DayOfWeek.FRIDAY)).equals(List.of("IC010")),
+            "after: the fastest-path table has the new route");
+
+        Set<List<String>> old = new HashSet<>();
+        before.forEach(p -> old.add(routeIds(p)));
+        check(old.equals(Set.of(List.of("IC005"), List.of("IC001", "IC002"))),
+            "a search started before the reload still sees the old timetable");
+
+        check(!g.reload(reloaded).changed(), "reloading the same timetable changes nothing");
+
+        List<TrainConnection> duplicate = new ArrayList<>(reloaded);
+        duplicate.add(createConnection("IC010", "CityA", "CityD", "09:00", "10:00", 0, "IC", "Daily", 10, 5));
+        boolean rejected = false;
+        try {
+            g.reload(duplicate);
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        check(rejected && g.getConnectionByRouteId("IC010").departureTime.equals(LocalTime.parse("07:00")),
+            "a duplicate route id is rejected and the graph is left untouched");
+        System.out.println();
+    }
+
+    // Helper methods
+
+    private static int secondClassPrice(TrainGraph.PathResult p) {
+        int sum = 0;
+        for (TrainConnection tc : p.edges) sum += tc.secondClassRate;
+        return sum;
+    }
+
+    private static Map<String, Map<String, Set<List<String>>>> byRouteIds(
+            Map<String, Map<String, List<TrainGraph.PathResult>>> all) {
+        Map<String, Map<String, Set<List<String>>>> out = new HashMap<>();
+        for (Map.Entry<String, Map<String, List<TrainGraph.PathResult>>> eFrom : all.entrySet()) {
+            for (Map.Entry<String, List<TrainGraph.PathResult>> eTo : eFrom.getValue().entrySet()) {
+                Set<List<String>> ids = new HashSet<>();
+                for (TrainGraph.PathResult p : eTo.getValue()) ids.add(routeIds(p));
+                out.computeIfAbsent(eFrom.getKey(), k -> new HashMap<>()).put(eTo.getKey(), ids);
+            }
+        }
+        return out;
+    }
+
+    private static void check(boolean ok, String label) {
+        System.out.println((ok ? "✓ " : "✗ FAILED: ") + label);
+        if (!ok) failures++;
+    }
+
+    private static List<String> routeIds(TrainGraph.PathResult p) {
+        List<String> ids = new ArrayList<>();
+        for (TrainConnection tc : p.edges) ids.add(tc.getRouteID());
+        return ids;
+    }
+
+    private static TrainConnection createConnection(String routeID, String depCity, String arrCity,
+                                                   String depTime, String arrTime, int dayOffset,
+                                                   String trainType, String daysOfOperation,
+                                                   int firstClass, int secondClass) {
+        TrainConnection tc = new TrainConnection();
+
+        // Use reflection to set private routeID field
+        try {
+            java.lang.reflect.Field field = TrainConnection.class.getDeclaredField("routeID");
+            field.setAccessible(true);
+            field.set(tc, routeID);
+        } catch (Exception e) {
+            System.err.println("Error setting routeID: " + e.getMessage());
+        }
+
+        tc.departureCity = depCity;
+        tc.arrivalCity = arrCity;
+        tc.departureTime = LocalTime.parse(depTime);
+        tc.arrivalTime = LocalTime.parse(arrTime);
+        tc.arrivalDayOffset = dayOffset;
+        tc.trainType = trainType;
+        tc.daysOfOperation = daysOfOperation;
+        tc.firstClassRate = firstClass;
+        tc.secondClassRate = secondClass;
+
+        // Calculate duration
+        long depMinutes = tc.departureTime.toSecondOfDay() / 60;
+        long arrMinutes = tc.arrivalTime.toSecondOfDay() / 60 + dayOffset * 24 * 60L;
+        tc.tripDuration = Duration.ofMinutes(arrMinutes - depMinutes);
+
+        return tc;
+    }
+}
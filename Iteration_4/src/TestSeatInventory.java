@@ -0,0 +1,177 @@
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test script for the in-memory seat counts (SeatInventory reserve / release).
+ */
+public class TestSeatInventory {
+
+    private static int failures = 0;
+
+    // CityA -> CityB -> CityC -> CityD, one daily train per hop, all on the same day
+    private static final TrainConnection L1 = createConnection("L1", "CityA", "CityB", "08:00", "09:00");
+    private static final TrainConnection L2 = createConnection("L2", "CityB", "CityC", "10:00", "11:00");
+    private static final TrainConnection L3 = createConnection("L3", "CityC", "CityD", "12:00", "13:00");
+    private static final LocalDate DATE = LocalDate.of(2030, 1, 7);
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("==============================================");
+        System.out.println("SEAT INVENTORY TEST SUITE");
+        System.out.println("==============================================\n");
+
+        testScenario1_ConcurrentBookingsNeverOverbook();
+        testScenario2_FailedReserveTakesNothing();
+        testScenario3_ReleaseRestoresSeats();
+
+        System.out.println("\n==============================================");
+        System.out.println(failures == 0 ? "ALL TESTS PASSED" : failures + " CHECK(S) FAILED");
+        System.out.println("==============================================");
+        if (failures > 0) System.exit(1);
+    }
+
+    /**
+     * Scenario 1: Threads booking overlapping multi-train trips never sell more seats than
+     * a train has, and the counts match the bookings that were confirmed.
+     */
+    private static void testScenario1_ConcurrentBookingsNeverOverbook() throws Exception {
+        System.out.println("TEST 1: Concurrent bookings never overbook");
+        System.out.println("-------------------------------------------");
+
+        int capacity = 50;
+        SeatInventory seats = new SeatInventory(capacity, 200);
+        List<TrainGraph.PathResult> paths = List.of(path(L1, L2), path(L2, L3), path(L1, L2, L3), path(L3), path(L1));
+
+        int threads = 8;
+        Map<String, AtomicInteger> confirmed = new ConcurrentHashMap<>();
+        for (TrainConnection tc : List.of(L1, L2, L3)) confirmed.put(tc.getRouteID(), new AtomicInteger());
+        AtomicInteger soldOut = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 2000; i++) {
+                    TrainGraph.PathResult p = paths.get(random.nextInt(paths.size()));
+                    int n = 1 + random.nextInt(3);
+                    if (seats.reserve(p, DATE, SeatInventory.SeatClass.FIRST, n)) {
+                        for (TrainConnection tc : p.edges) confirmed.get(tc.getRouteID()).addAndGet(n);
+                    } else {
+                        soldOut.incrementAndGet();
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) worker.join();
+
+        System.out.println("Sold: " + confirmed + ", turned away: " + soldOut.get());
+        boolean withinCapacity = true, consistent = true;
+        for (TrainConnection tc : List.of(L1, L2, L3)) {
+            int sold = confirmed.get(tc.getRouteID()).get();
+            withinCapacity &= sold <= capacity;
+            consistent &= seats.seatsLeft(path(tc), DATE, SeatInventory.SeatClass.FIRST) == capacity - sold;
+        }
+        check(withinCapacity, "no train sold more than its " + capacity + " first-class seats");
+        check(consistent, "seats left on every train match the confirmed bookings");
+        check(soldOut.get() > 0, "bookings were turned away once trains filled up");
+        check(seats.seatsLeft(path(L1), DATE, SeatInventory.SeatClass.SECOND) == 200,
+            "second class is counted apart from first class");
+        System.out.println();
+    }
+
+    /**
+     * Scenario 2: A booking refused because one train is full takes no seat on the others.
+     */
+    private static void testScenario2_FailedReserveTakesNothing() {
+        System.out.println("TEST 2: Failed reserve takes nothing");
+        System.out.println("-------------------------------------");
+
+        SeatInventory seats = new SeatInventory(10, 10);
+        check(seats.reserve(path(L2), DATE, SeatInventory.SeatClass.FIRST, 9), "9 of 10 seats taken on L2");
+        check(!seats.reserve(path(L1, L2, L3), DATE, SeatInventory.SeatClass.FIRST, 2),
+            "2 seats on L1 + L2 + L3 are refused, L2 has only 1 left");
+        check(seats.seatsLeft(path(L1), DATE, SeatInventory.SeatClass.FIRST) == 10
+                && seats.seatsLeft(path(L3), DATE, SeatInventory.SeatClass.FIRST) == 10
+                && seats.seatsLeft(path(L2), DATE, SeatInventory.SeatClass.FIRST) == 1,
+            "the refused booking took no seat on L1, L2 or L3");
+        check(seats.reserve(path(L1, L2, L3), DATE.plusDays(1), SeatInventory.SeatClass.FIRST, 2),
+            "the same trip the next day is not affected");
+        System.out.println();
+    }
+
+    /**
+     * Scenario 3: release gives back what reserve took, by path or by route ids and dates.
+     */
+    private static void testScenario3_ReleaseRestoresSeats() {
+        System.out.println("TEST 3: Release restores seats");
+        System.out.println("-------------------------------");
+
+        SeatInventory seats = new SeatInventory(10, 10);
+        TrainGraph.PathResult trip = path(L1, L2, L3);
+        seats.reserve(trip, DATE, SeatInventory.SeatClass.SECOND, 4);
+        seats.reserve(path(L2), DATE, SeatInventory.SeatClass.SECOND, 3);
+        check(seats.seatsLeft(trip, DATE, SeatInventory.SeatClass.SECOND) == 3, "3 seats left on the fullest train");
+
+        seats.release(trip, DATE, SeatInventory.SeatClass.SECOND, 4);
+        check(seats.seatsLeft(path(L1), DATE, SeatInventory.SeatClass.SECOND) == 10
+                && seats.seatsLeft(path(L2), DATE, SeatInventory.SeatClass.SECOND) == 7,
+            "releasing the trip gives its seats back and keeps the other booking's");
+
+        seats.release(List.of("L2"), List.of(DATE), SeatInventory.SeatClass.SECOND, 3);
+        check(seats.seatsLeft(trip, DATE, SeatInventory.SeatClass.SECOND) == 10,
+            "releasing by route id and date gives the same seats back");
+        check(seats.reserve(trip, DATE, SeatInventory.SeatClass.SECOND, 10), "released seats can be booked again");
+        System.out.println();
+    }
+
+    // Helper methods
+
+    private static TrainGraph.PathResult path(TrainConnection... edges) {
+        return new TrainGraph.PathResult(edges[0].departureCity, edges[edges.length - 1].arrivalCity,
+            Arrays.asList(edges));
+    }
+
+    private static void check(boolean ok, String label) {
+        System.out.println((ok ? "✓ " : "✗ FAILED: ") + label);
+        if (!ok) failures++;
+    }
+
+    private static TrainConnection createConnection(String routeID, String depCity, String arrCity,
+                                                   String depTime, String arrTime) {
+        TrainConnection tc = new TrainConnection();
+
+        // Use reflection to set private routeID field
+        try {
+            java.lang.reflect.Field field = TrainConnection.class.getDeclaredField("routeID");
+            field.setAccessible(true);
+            field.set(tc, routeID);
+        } catch (Exception e) {
+            System.err.println("Error setting routeID: " + e.getMessage());
+        }
+
+        tc.departureCity = depCity;
+        tc.arrivalCity = arrCity;
+        tc.departureTime = LocalTime.parse(depTime);
+        tc.arrivalTime = LocalTime.parse(arrTime);
+        tc.arrivalDayOffset = 0;
+        tc.trainType = "IC";
+        tc.daysOfOperation = "Daily";
+        tc.firstClassRate = 10;
+        tc.secondClassRate = 5;
+        tc.tripDuration = Duration.between(tc.departureTime, tc.arrivalTime);
+        return tc;
+    }
+}
@@ -0,0 +1,243 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Test script for loading the timetable (sequential and parallel CSV parsing, snapshots).
+ */
+public class TestTimetableLoading {
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("==============================================");
+        System.out.println("TIMETABLE LOADING TEST SUITE");
+        System.out.println("==============================================\n");
+
+        testScenario1_ParallelMatchesSequential();
+        testScenario2_SnapshotRoundTrip();
+        testScenario3_StaleSnapshot();
+        testScenario4_CorruptedSnapshot();
+
+        System.out.println("\n==============================================");
+        System.out.println(failures == 0 ? "ALL TESTS PASSED" : failures + " CHECK(S) FAILED");
+        System.out.println("==============================================");
+        if (failures > 0) System.exit(1);
+    }
+
+    /**
+     * Scenario 1: Chunks cut at record ends even inside quoted fields, so a parallel load
+     * gives the same connections, in the same order, and the same skipped-row count.
+     */
+    private static void testScenario1_ParallelMatchesSequential() throws Exception {
+        System.out.println("TEST 1: Parallel load matches sequential load");
+        System.out.println("----------------------------------------------");
+
+        Path csv = writeCsv(20000);
+        try {
+            TrainConnection.loadTrainConnectionsFromCSV(csv.toString());
+            List<String> sequential = describeAll(TrainConnection.trainConnections);
+            int sequentialSkipped = TrainConnection.getSkippedRowCount();
+
+            TrainConnection.loadTrainConnectionsFromCSV(csv.toString(), 4);
+            List<String> parallel = describeAll(TrainConnection.trainConnections);
+            int parallelSkipped = TrainConnection.getSkippedRowCount();
+
+            System.out.println("Rows: " + sequential.size() + ", skipped: " + sequentialSkipped);
+            check(sequential.size() > 0 && sequentialSkipped > 0, "the file has both good and short rows");
+            check(sequential.contains(String.join("|", "R000007", "Paris, Nord\nQuai \"A\"", "Lyon",
+                    "15:07", "17:07", "0", "TGV", "Mon,Wed,Fri", "57", "37", "21", "120")),
+                "quoted field with comma, newline and escaped quote is read whole");
+            check(sequential.equals(parallel), "parallel load gives the same connections in the same order");
+            check(sequentialSkipped == parallelSkipped, "parallel load skips the same number of rows");
+
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(csv));
+            Set<Integer> starts = recordStarts(buf);
+            int headerEnd = Collections.min(starts);
+            int[] bounds = chunkBounds(buf, headerEnd, 64);
+            boolean aligned = bounds[0] == headerEnd && bounds[bounds.length - 1] == buf.limit();
+            for (int c = 1; c < bounds.length; c++) {
+                aligned &= bounds[c] >= bounds[c - 1];
+                if (c < bounds.length - 1) aligned &= starts.contains(bounds[c]) || bounds[c] == buf.limit();
+            }
+            System.out.println("Chunks: " + (bounds.length - 1));
+            check(bounds.length > 2 && aligned, "every chunk bound is the start of a record");
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Scenario 2: A snapshot written after parsing the CSV reads back the same connections.
+     */
+    private static void testScenario2_SnapshotRoundTrip() throws Exception {
+        System.out.println("TEST 2: Snapshot round trip");
+        System.out.println("----------------------------");
+
+        Path csv = writeCsv(300);
+        Path snapshot = Path.of(csv + TrainConnection.SNAPSHOT_SUFFIX);
+        try {
+            TrainConnection.loadTrainConnections(csv.toString(), 2);
+            List<String> parsed = describeAll(TrainConnection.trainConnections);
+            int parsedSkipped = TrainConnection.getSkippedRowCount();
+            check(Files.exists(snapshot), "parsing the CSV writes a snapshot");
+
+            TrainConnection.loadTrainConnections(csv.toString(), 2);
+            check(describeAll(TrainConnection.trainConnections).equals(parsed)
+                    && TrainConnection.getSkippedRowCount() == parsedSkipped,
+                "the snapshot gives the same connections and skipped-row count");
+
+            // Same size and mtime but different rows: only a snapshot read still sees the old ones
+            editInPlace(csv, "R000001", "X000001");
+            TrainConnection.loadTrainConnections(csv.toString(), 2);
+            check(describeAll(TrainConnection.trainConnections).equals(parsed),
+                "an up-to-date snapshot is read instead of the CSV");
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(snapshot);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Scenario 3: A CSV whose size or modification time changed makes the snapshot stale.
+     */
+    private static void testScenario3_StaleSnapshot() throws Exception {
+        System.out.println("TEST 3: Stale snapshot");
+        System.out.println("-----------------------");
+
+        Path csv = writeCsv(300);
+        Path snapshot = Path.of(csv + TrainConnection.SNAPSHOT_SUFFIX);
+        try {
+            TrainConnection.loadTrainConnections(csv.toString(), 2);
+
+            editInPlace(csv, "R000001", "X000001");
+            Files.setLastModifiedTime(csv, FileTime.fromMillis(Files.getLastModifiedTime(csv).toMillis() + 2000));
+            TrainConnection.loadTrainConnections(csv.toString(), 2);
+            check(TrainConnection.findByRouteID("X000001") != null && TrainConnection.findByRouteID("R000001") == null,
+                "a changed modification time makes the CSV be parsed again");
+
+            FileTime modified = Files.getLastModifiedTime(csv);
+            Files.writeString(csv, "R999999,Nice,Lyon,09:00,13:00,TGV,Daily,80,50\n", StandardCharsets.UTF_8,
+                    java.nio.file.StandardOpenOption.APPEND);
+            Files.setLastModifiedTime(csv, modified);
+            TrainConnection.loadTrainConnections(csv.toString(), 2);
+            check(TrainConnection.findByRouteID("R999999") != null,
+                "a changed size makes the CSV be parsed again, even with the same modification time");
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(snapshot);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Scenario 4: A snapshot whose checksum does not match is ignored and the CSV is parsed.
+     */
+    private static void testScenario4_CorruptedSnapshot() throws Exception {
+        System.out.println("TEST 4: Corrupted snapshot");
+        System.out.println("---------------------------");
+
+        Path csv = writeCsv(300);
+        Path snapshot = Path.of(csv + TrainConnection.SNAPSHOT_SUFFIX);
+        try {
+            TrainConnection.loadTrainConnections(csv.toString(), 2);
+
+            // The CSV changes without a trace in size or mtime, so only the checksum can reject the snapshot
+            editInPlace(csv, "R000001", "X000001");
+            byte[] bytes = Files.readAllBytes(snapshot);
+            bytes[bytes.length - 1] ^= 0x01; // last price column
+            Files.write(snapshot, bytes);
+
+            TrainConnection.loadTrainConnections(csv.toString(), 2);
+            check(TrainConnection.findByRouteID("X000001") != null && TrainConnection.findByRouteID("R000001") == null,
+                "the corrupted snapshot is rejected and the CSV is parsed");
+            check(!Arrays.equals(Files.readAllBytes(snapshot), bytes), "a good snapshot is written in its place");
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(snapshot);
+        }
+        System.out.println();
+    }
+
+    // Helper methods
+
+    // Replaces text with text of the same length, keeping the file's modification time
+    private static void editInPlace(Path file, String from, String to) throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        Files.writeString(file, Files.readString(file, StandardCharsets.UTF_8).replace(from, to), StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, modified);
+    }
+
+    private static Path writeCsv(int rows) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Route ID,Departure City,Arrival City,Departure Time,Arrival Time,Train Type,Days of Operation,")
+          .append("First Class ticket rate (in euro),Second Class ticket rate (in euro)\n");
+        for (int i = 0; i < rows; i++) {
+            String id = String.format("R%06d", i);
+            String time = String.format("%02d:%02d", 8 + i % 12, i % 60);
+            String arrival = String.format("%02d:%02d", 10 + i % 12, i % 60);
+            if (i % 13 == 5) {
+                sb.append(id).append(",Lyon,Nice\n");                             // too few columns
+            } else if (i % 7 == 0) {
+                sb.append(id).append(",\"Paris, Nord\nQuai \"\"A\"\"\",Lyon,")     // comma, newline, quotes
+                  .append(time).append(',').append(arrival).append(",TGV,\"Mon,Wed,Fri\",")
+                  .append(50 + i % 10).append(',').append(30 + i % 10).append('\n');
+            } else {
+                sb.append(id).append(",Lyon,Marseille,").append(time).append(',').append(arrival)
+                  .append(",IC,Daily,").append(40 + i % 10).append(',').append(20 + i % 10).append('\n');
+            }
+            if (i % 50 == 49) sb.append('\n');                                    // blank lines are not counted
+        }
+        Path csv = Files.createTempFile("timetable", ".csv");
+        Files.writeString(csv, sb.toString(), StandardCharsets.UTF_8);
+        return csv;
+    }
+
+    // Offsets where a record starts: after every newline outside quotes
+    private static Set<Integer> recordStarts(ByteBuffer buf) {
+        Set<Integer> starts = new HashSet<>();
+        boolean inQuotes = false;
+        for (int i = 0; i < buf.limit(); i++) {
+            byte b = buf.get(i);
+            if (b == '"') inQuotes = !inQuotes;
+            else if (b == '\n' && !inQuotes) starts.add(i + 1);
+        }
+        return starts;
+    }
+
+    private static int[] chunkBounds(ByteBuffer buf, int start, int maxChunks) throws Exception {
+        java.lang.reflect.Method m = TrainConnection.class.getDeclaredMethod("chunkBounds",
+                ByteBuffer.class, int.class, int.class, ForkJoinPool.class);
+        m.setAccessible(true);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            return (int[]) m.invoke(null, buf, start, maxChunks, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<String> describeAll(List<TrainConnection> connections) {
+        List<String> out = new ArrayList<>();
+        for (TrainConnection tc : connections) {
+            out.add(String.join("|", tc.getRouteID(), tc.departureCity, tc.arrivalCity,
+                    tc.departureTime.toString(), tc.arrivalTime.toString(), Integer.toString(tc.arrivalDayOffset),
+                    tc.trainType, tc.daysOfOperation, Integer.toString(tc.firstClassRate),
+                    Integer.toString(tc.secondClassRate), Integer.toString(tc.dayMask()),
+                    Integer.toString(tc.durationMinutes())));
+        }
+        return out;
+    }
+
+    private static void check(boolean ok, String label) {
+        System.out.println((ok ? "✓ " : "✗ FAILED: ") + label);
+        if (!ok) failures++;
+    }
+}
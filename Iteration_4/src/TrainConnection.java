@@ -1,18 +1,36 @@
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
 import java.time.Duration;
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
 
 
 public class TrainConnection {
-    public static ArrayList<TrainConnection> trainConnections = new ArrayList<>(100);
+    // Replaced as a whole by every load, so code iterating an older list is not disturbed
+    public static volatile ArrayList<TrainConnection> trainConnections = new ArrayList<>(100);
+
+    // routeID -> connection for the list above; rebuilt when a different list is assigned
+    private static volatile RouteIndex routeIndex = new RouteIndex(trainConnections);
 
     private String routeID;
     public String departureCity;
@@ -26,45 +44,185 @@ public class TrainConnection {
     public int secondClassRate;
     public Duration tripDuration;
 
+    // Primitive views of the fields above, used by the searches and day filters.
+    // Filled by the CSV loader; computed on first use for connections built by hand.
+    private int dayMask = -1;          // bit (DayOfWeek.getValue() - 1) set when the train runs that day
+    private int departureMinute = -1;  // minute of day
+    private int arrivalMinute = -1;    // minute of day (without the day offset)
+    private int durationMinutes = -1;
+
+    public static final int ALL_DAYS = 0x7F;
+
+    private static int skippedRowCount;
+
+    static final String SNAPSHOT_SUFFIX = ".snapshot";
+
     public String getRouteID() { return routeID; }
 
     public TrainConnection() {
     }
 
+    /** The connection with the given route id in trainConnections, or null. O(1). */
+    public static TrainConnection findByRouteID(String routeID) {
+        ArrayList<TrainConnection> list = trainConnections;
+        RouteIndex index = routeIndex;
+        if (index.list != list) routeIndex = index = new RouteIndex(list);
+        return index.byId.get(routeID);
+    }
+
+    private static final class RouteIndex {
+        final ArrayList<TrainConnection> list;
+        final Map<String, TrainConnection> byId;
+
+        RouteIndex(ArrayList<TrainConnection> list) {
+            this.list = list;
+            this.byId = new HashMap<>(list.size() * 2);
+            for (TrainConnection tc : list) byId.putIfAbsent(tc.routeID, tc); // first one wins
+        }
+    }
+
+    private static void publish(ArrayList<TrainConnection> loaded) {
+        routeIndex = new RouteIndex(loaded);
+        trainConnections = loaded;
+    }
+
     public static void loadTrainConnectionsFromCSV(String filePath) {
-        trainConnections.clear();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm");
-
-        try (BufferedReader br = Files.newBufferedReader(Path.of(filePath), StandardCharsets.UTF_8)) {
-
-            String line = br.readLine(); // skip header, we don't want it
-            while ((line = br.readLine()) != null) {
-                ArrayList<String> cols = parseCsvLine(line);
-                if (cols.size() < 9)
-                    continue;
-
-                TrainConnection tc = new TrainConnection();
-                tc.routeID = cols.get(0).trim();
-                tc.departureCity = cols.get(1).trim();
-                tc.arrivalCity = cols.get(2).trim();
-                tc.departureTime = LocalTime.parse(cleanTime(cols.get(3)), formatter);
-                tc.arrivalTime = LocalTime.parse(cleanTime(cols.get(4)), formatter);
-                tc.arrivalDayOffset = extractDayOffset(cols.get(4));
-                tc.trainType = cols.get(5).trim();
-                tc.daysOfOperation = loadDays(cols.get(6).trim());
-                tc.firstClassRate = Integer.parseInt(cols.get(7).trim());
-                tc.secondClassRate = Integer.parseInt(cols.get(8).trim());
-
-                // compute trip duration
-                tc.tripDuration = computeDuration(tc.departureTime, tc.arrivalTime, tc.arrivalDayOffset);
-
-                trainConnections.add(tc);
+        // The file is memory-mapped and parsed in place, one pass over the bytes
+        try (FileChannel ch = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            CsvParser parser = new CsvParser(buf);
+            int start = parser.nextRecord(0); // skip header, we don't want it
+            ArrayList<TrainConnection> loaded = new ArrayList<>();
+            skippedRowCount = parser.parse(start, buf.limit(), loaded);
+            publish(loaded);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read CSV: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Same result as loadTrainConnectionsFromCSV(filePath), parsed on a ForkJoinPool of
+     * the given parallelism. The file is cut into one byte range per chunk, each cut is
+     * moved to the end of a record (newlines inside quoted fields don't count) and the
+     * chunks are parsed independently, then appended in file order.
+     */
+    public static void loadTrainConnectionsFromCSV(String filePath, int parallelism) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (FileChannel ch = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            int start = new CsvParser(buf).nextRecord(0); // skip header, we don't want it
+            int[] bounds = chunkBounds(buf, start, parallelism * CHUNKS_PER_THREAD, pool);
+
+            List<List<TrainConnection>> parts = new ArrayList<>();
+            int[] skipped = new int[bounds.length - 1];
+            for (int c = 0; c < bounds.length - 1; c++) parts.add(new ArrayList<>());
+
+            // Every chunk gets its own parser (and buffer view), so nothing is shared while parsing
+            pool.submit(() -> IntStream.range(0, bounds.length - 1).parallel().forEach(c ->
+                    skipped[c] = new CsvParser(buf.duplicate()).parse(bounds[c], bounds[c + 1], parts.get(c))))
+                    .get();
+
+            int total = 0, skippedTotal = 0;
+            for (int c = 0; c < parts.size(); c++) {
+                total += parts.get(c).size();
+                skippedTotal += skipped[c];
             }
+            ArrayList<TrainConnection> loaded = new ArrayList<>(total);
+            for (List<TrainConnection> part : parts) loaded.addAll(part);
+            publish(loaded);
+            skippedRowCount = skippedTotal;
         } catch (IOException e) {
             throw new RuntimeException("Failed to read CSV: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("CSV loading interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to parse CSV: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdown();
         }
     }
 
+    /**
+     * Loads the timetable from the binary snapshot beside the CSV (csvPath + ".snapshot")
+     * when it is up to date, otherwise parses the CSV with the given parallelism and
+     * writes a fresh snapshot for the next start. A snapshot is up to date when it was
+     * written from a CSV of the same size and modification time and its checksum matches.
+     */
+    public static void loadTrainConnections(String csvPath, int parallelism) {
+        Path csv = Path.of(csvPath);
+        Path snapshot = Path.of(csvPath + SNAPSHOT_SUFFIX);
+        long size, modified;
+        try {
+            size = Files.size(csv);
+            modified = Files.getLastModifiedTime(csv).toMillis();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read CSV: " + e.getMessage(), e);
+        }
+
+        if (Snapshot.read(snapshot, size, modified)) return;
+
+        loadTrainConnectionsFromCSV(csvPath, parallelism);
+        try {
+            Snapshot.write(snapshot, size, modified, trainConnections, skippedRowCount);
+        } catch (IOException e) {
+            System.out.println("Could not write timetable snapshot: " + e.getMessage());
+        }
+    }
+
+    /** Number of non-blank rows with fewer than 9 columns skipped by the last load. */
+    public static int getSkippedRowCount() {
+        return skippedRowCount;
+    }
+
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int MIN_CHUNK_BYTES = 64 * 1024;
+
+    /**
+     * Record-aligned cut points over [start, limit): bounds[0] = start, bounds[last] = limit.
+     * A raw cut can land inside a quoted field, so the quotes in every raw range are
+     * counted first (in parallel); the running parity tells whether a cut starts inside
+     * quotes, and the cut is then moved forward to the next record-ending newline.
+     */
+    private static int[] chunkBounds(ByteBuffer buf, int start, int maxChunks, ForkJoinPool pool)
+            throws InterruptedException, ExecutionException {
+        int limit = buf.limit();
+        int chunks = Math.max(1, Math.min(maxChunks, (limit - start) / MIN_CHUNK_BYTES));
+        long size = limit - start;
+        int[] raw = new int[chunks + 1];
+        for (int c = 0; c <= chunks; c++) raw[c] = (int) (start + size * c / chunks);
+
+        int[] quotes = new int[chunks];
+        pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(c -> {
+            int count = 0;
+            for (int i = raw[c]; i < raw[c + 1]; i++) if (buf.get(i) == '"') count++;
+            quotes[c] = count;
+        })).get();
+
+        int[] bounds = new int[chunks + 1];
+        bounds[0] = start;
+        bounds[chunks] = limit;
+        boolean inQuotes = false;
+        for (int c = 1; c < chunks; c++) {
+            inQuotes ^= (quotes[c - 1] & 1) == 1;
+            int i = raw[c];
+            boolean q = inQuotes;
+            // the byte before the cut may itself end a record
+            if (i > start && buf.get(i - 1) == '\n' && !q) {
+                bounds[c] = i;
+            } else {
+                while (i < limit) {
+                    byte b = buf.get(i++);
+                    if (b == '"') q = !q;
+                    else if (b == '\n' && !q) break;
+                }
+                bounds[c] = i;
+            }
+            bounds[c] = Math.max(bounds[c], bounds[c - 1]);
+        }
+        return bounds;
+    }
+
     private static String loadDays(String str){
         if(str.equals("Daily")){
             return str;
@@ -136,6 +294,20 @@ public class TrainConnection {
         return depDays;
     }
 
+    /** True if both describe the same route: same id, cities, times, train type, days and prices. */
+    boolean sameAs(TrainConnection other) {
+        return Objects.equals(routeID, other.routeID)
+                && Objects.equals(departureCity, other.departureCity)
+                && Objects.equals(arrivalCity, other.arrivalCity)
+                && Objects.equals(departureTime, other.departureTime)
+                && Objects.equals(arrivalTime, other.arrivalTime)
+                && arrivalDayOffset == other.arrivalDayOffset
+                && Objects.equals(trainType, other.trainType)
+                && Objects.equals(daysOfOperation, other.daysOfOperation)
+                && firstClassRate == other.firstClassRate
+                && secondClassRate == other.secondClassRate;
+    }
+
     @Override
     public String toString() {
         return String.format(
@@ -154,90 +326,463 @@ public class TrainConnection {
                 tripDuration.toMinutesPart());
     }
 
-    // Removes any suffix like "(+1d)" from time strings
-    private static String cleanTime(String raw) {
-        return raw.replaceAll("\\s*\\(\\+\\d+d\\)", "").trim();
+    public static Set<String> getTrainTypes(){
+        Set<String> trainTypes = new HashSet<String>();
+        for (TrainConnection trainConnection : trainConnections){
+            trainTypes.add(trainConnection.trainType);
+        }
+        return trainTypes;
+    }
+        // === Primitive views ===
+    private void computeViews() {
+        dayMask = parseDayMask(daysOfOperation);
+        departureMinute = departureTime.getHour() * 60 + departureTime.getMinute();
+        arrivalMinute = arrivalTime.getHour() * 60 + arrivalTime.getMinute();
+        durationMinutes = (int) tripDuration.toMinutes();
+    }
+
+    /** Operating days as a 7-bit mask (Monday = bit 0); see dayBit / dayMaskOf. */
+    public int dayMask() {
+        if (dayMask < 0) computeViews();
+        return dayMask;
+    }
+
+    /** Departure time as minutes since midnight. */
+    public int departureMinute() {
+        if (departureMinute < 0) computeViews();
+        return departureMinute;
+    }
+
+    /** Arrival time of day as minutes since midnight (arrivalDayOffset not included). */
+    public int arrivalMinute() {
+        if (arrivalMinute < 0) computeViews();
+        return arrivalMinute;
     }
 
-    // Extracts the day offset to compute the trip duration
-    private static int extractDayOffset(String raw) {
-        if (raw.contains("(+")) {
-            String num = raw.replaceAll(".*\\(\\+(\\d+)d\\).*", "$1");
-            return Integer.parseInt(num);
+    /** Trip duration in minutes. */
+    public int durationMinutes() {
+        if (durationMinutes < 0) computeViews();
+        return durationMinutes;
+    }
+
+    public static int dayBit(DayOfWeek d) {
+        return 1 << (d.getValue() - 1);
+    }
+
+    public static int dayMaskOf(Set<DayOfWeek> days) {
+        int mask = 0;
+        for (DayOfWeek d : days) mask |= dayBit(d);
+        return mask;
+    }
+
+    // "Daily", "Mon,Wed,Fri", "Fri-Sun" (wraps) or combinations; unknown tokens are ignored
+    private static int parseDayMask(String spec) {
+        String s = spec.replace("\"", "").trim();
+        if (s.equalsIgnoreCase("Daily")) return ALL_DAYS;
+        int mask = 0;
+        for (String tok : s.split(",")) {
+            String[] range = tok.split("-");
+            int start = dayIndex(range[0]);
+            int end = dayIndex(range[range.length - 1]);
+            if (start < 0 || end < 0) continue;
+            for (int i = start; ; i = (i + 1) % 7) {
+                mask |= 1 << i;
+                if (i == end) break;
+            }
         }
-        return 0;
+        return mask;
     }
 
-    // Compute duration considering next-day offsets
-    private static Duration computeDuration(LocalTime dep, LocalTime arr, int dayOffset) {
-        long depMinutes = dep.toSecondOfDay() / 60;
-        long arrMinutes = arr.toSecondOfDay() / 60 + dayOffset * 24 * 60L;
-        return Duration.ofMinutes(arrMinutes - depMinutes);
+    private static int dayIndex(String token) {
+        String t = token.trim().toLowerCase();
+        switch (t) {
+            case "mon": return 0;
+            case "tue": return 1;
+            case "wed": return 2;
+            case "thu": return 3;
+            case "fri": return 4;
+            case "sat": return 5;
+            case "sun": return 6;
+            default: return -1;
+        }
     }
 
-    private static ArrayList<String> parseCsvLine(String line) {
-        ArrayList<String> out = new ArrayList<>();
-        StringBuilder sb = new StringBuilder();
-        boolean inQuotes = false;
+        // === Day helpers ===
+    public boolean runsOn(DayOfWeek d) {
+        return (dayMask() & dayBit(d)) != 0;
+    }
 
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
+    /** True if the train runs on at least one day of the mask (see dayMaskOf). */
+    public boolean runsOnAny(int daysMask) {
+        return (dayMask() & daysMask) != 0;
+    }
 
-            if (c == '"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    sb.append('"');
-                    i++;
+    public EnumSet<DayOfWeek> operatingDaysSet() {
+        EnumSet<DayOfWeek> set = EnumSet.noneOf(DayOfWeek.class);
+        for (DayOfWeek d : DayOfWeek.values()) {
+            if (runsOn(d)) set.add(d);
+        }
+        return set;
+    }
+
+    // === CSV parsing ===
+
+    /**
+     * Single-pass CSV parser working directly on the bytes of the file.
+     * - Records are split on newlines outside quotes, fields on commas outside quotes
+     * - "HH:mm" and "HH:mm (+Nd)" are read straight into minutes, prices straight into ints
+     * - Repeated values (cities, train types, day lists, times, durations) share one instance
+     * Records with fewer than 9 columns are skipped, like the previous line-based loader.
+     */
+    private static final class CsvParser {
+        private static final int COLUMNS = 9;
+        private static final LocalTime[] TIMES = new LocalTime[24 * 60];
+        static {
+            for (int m = 0; m < TIMES.length; m++) TIMES[m] = LocalTime.of(m / 60, m % 60);
+        }
+
+        private final ByteBuffer buf;
+        private final Map<String, String> strings = new HashMap<>();
+        private final Map<String, String> days = new HashMap<>();      // raw spec -> loadDays(spec)
+        private final Map<String, Integer> dayMasks = new HashMap<>(); // loadDays(spec) -> mask
+        private final Map<Integer, Duration> durations = new HashMap<>();
+
+        // Bounds of the fields of the current record: [fieldStart[i], fieldEnd[i])
+        private final int[] fieldStart = new int[COLUMNS];
+        private final int[] fieldEnd = new int[COLUMNS];
+        private final boolean[] fieldQuoted = new boolean[COLUMNS];
+        private int columns;
+        private byte[] scratch = new byte[64];
+
+        CsvParser(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        /** Parses the records in [from, to) into out. Returns the number of skipped records. */
+        int parse(int from, int to, List<TrainConnection> out) {
+            int skipped = 0;
+            int pos = from;
+            while (pos < to) {
+                int next = split(pos, to);
+                if (columns < COLUMNS) {
+                    if (!isBlank(pos, next)) skipped++;
                 } else {
+                    out.add(toConnection());
+                }
+                pos = next;
+            }
+            return skipped;
+        }
+
+        /** Start of the record after the one starting at pos. */
+        int nextRecord(int pos) {
+            int limit = buf.limit();
+            boolean inQuotes = false;
+            for (int i = pos; i < limit; i++) {
+                byte b = buf.get(i);
+                if (b == '"') inQuotes = !inQuotes; // an escaped "" toggles twice
+                else if (b == '\n' && !inQuotes) return i + 1;
+            }
+            return limit;
+        }
+
+        // Records the field bounds of the record starting at pos; returns the start of the next one
+        private int split(int pos, int to) {
+            columns = 0;
+            int start = pos;
+            boolean inQuotes = false, quoted = false;
+            int i = pos;
+            for (; i < to; i++) {
+                byte b = buf.get(i);
+                if (b == '"') {
                     inQuotes = !inQuotes;
+                    quoted = true;
+                } else if (!inQuotes && b == ',') {
+                    field(start, i, quoted);
+                    start = i + 1;
+                    quoted = false;
+                } else if (!inQuotes && b == '\n') {
+                    break;
                 }
-            } else if (c == ',' && !inQuotes) {
-                out.add(sb.toString());
-                sb.setLength(0);
-            } else {
-                sb.append(c);
             }
+            int end = (i > start && buf.get(i - 1) == '\r') ? i - 1 : i;
+            field(start, end, quoted);
+            return Math.min(i + 1, to);
         }
-        out.add(sb.toString());
-        return out;
-    }
 
-    public static Set<String> getTrainTypes(){
-        Set<String> trainTypes = new HashSet<String>();
-        for (TrainConnection trainConnection : trainConnections){
-            trainTypes.add(trainConnection.trainType);
+        private void field(int start, int end, boolean quoted) {
+            if (columns < COLUMNS) {
+                fieldStart[columns] = start;
+                fieldEnd[columns] = end;
+                fieldQuoted[columns] = quoted;
+            }
+            columns++;
         }
-        return trainTypes;
-    }
-        // === Day helpers ===
-    public boolean runsOn(java.time.DayOfWeek d) {
-        if ("Daily".equalsIgnoreCase(daysOfOperation)) return true;
-        String key = d.name().substring(0,3); // MON,TUE,...
-        for (String tok : daysOfOperation.split(",")) {
-            if (tok.trim().equalsIgnoreCase(key.substring(0,1) + key.substring(1).toLowerCase())) {
-                return true; // "Mon","Tue",...
+
+        private boolean isBlank(int from, int to) {
+            for (int i = from; i < to; i++) {
+                byte b = buf.get(i);
+                if (b != ' ' && b != '\t' && b != '\r' && b != '\n') return false;
             }
+            return true;
+        }
+
+        private TrainConnection toConnection() {
+            TrainConnection tc = new TrainConnection();
+            tc.routeID = text(0);
+            tc.departureCity = shared(text(1));
+            tc.arrivalCity = shared(text(2));
+
+            int dep = minuteOfDay(3);
+            int arr = minuteOfDay(4);
+            tc.arrivalDayOffset = dayOffset(4);
+            tc.departureTime = TIMES[dep];
+            tc.arrivalTime = TIMES[arr];
+            tc.departureMinute = dep;
+            tc.arrivalMinute = arr;
+
+            tc.trainType = shared(text(5));
+            String spec = days.computeIfAbsent(text(6), TrainConnection::loadDays);
+            tc.daysOfOperation = spec;
+            tc.dayMask = dayMasks.computeIfAbsent(spec, TrainConnection::parseDayMask);
+            tc.firstClassRate = integer(7);
+            tc.secondClassRate = integer(8);
+
+            // compute trip duration
+            int minutes = arr + tc.arrivalDayOffset * 24 * 60 - dep;
+            tc.durationMinutes = minutes;
+            tc.tripDuration = durations.computeIfAbsent(minutes, m -> Duration.ofMinutes(m));
+            return tc;
         }
-        return false;
-    }
 
-    public java.util.EnumSet<java.time.DayOfWeek> operatingDaysSet() {
-        if ("Daily".equalsIgnoreCase(daysOfOperation)) {
-            return java.util.EnumSet.allOf(java.time.DayOfWeek.class);
+        private String shared(String s) {
+            String existing = strings.putIfAbsent(s, s);
+            return (existing == null) ? s : existing;
         }
-        java.util.EnumSet<java.time.DayOfWeek> set = java.util.EnumSet.noneOf(java.time.DayOfWeek.class);
-        for (String tok : daysOfOperation.split(",")) {
-            String t = tok.trim().toLowerCase();
-            switch (t) {
-                case "mon": set.add(java.time.DayOfWeek.MONDAY); break;
-                case "tue": set.add(java.time.DayOfWeek.TUESDAY); break;
-                case "wed": set.add(java.time.DayOfWeek.WEDNESDAY); break;
-                case "thu": set.add(java.time.DayOfWeek.THURSDAY); break;
-                case "fri": set.add(java.time.DayOfWeek.FRIDAY); break;
-                case "sat": set.add(java.time.DayOfWeek.SATURDAY); break;
-                case "sun": set.add(java.time.DayOfWeek.SUNDAY); break;
+
+        // Field text with surrounding whitespace removed and CSV quotes undone
+        private String text(int f) {
+            int start = fieldStart[f], end = fieldEnd[f];
+            int len = 0;
+            for (int i = start; i < end; i++) {
+                byte b = buf.get(i);
+                if (b == '"' && fieldQuoted[f]) {
+                    if (i + 1 < end && buf.get(i + 1) == '"') i++; // "" is a literal quote
+                    else continue;
+                }
+                if (len == scratch.length) scratch = Arrays.copyOf(scratch, len * 2);
+                scratch[len++] = b;
             }
+            int from = 0;
+            while (from < len && isSpace(scratch[from])) from++;
+            while (len > from && isSpace(scratch[len - 1])) len--;
+            return new String(scratch, from, len - from, StandardCharsets.UTF_8);
+        }
+
+        private int skipSpaceAndQuotes(int i, int end) {
+            while (i < end && (buf.get(i) == ' ' || buf.get(i) == '"' || buf.get(i) == '\t')) i++;
+            return i;
+        }
+
+        // "HH:mm", optionally followed by " (+Nd)"
+        private int minuteOfDay(int f) {
+            int end = fieldEnd[f];
+            int i = skipSpaceAndQuotes(fieldStart[f], end);
+            int hours = 0, minutes = 0, digits = 0;
+            while (i < end && isDigit(buf.get(i))) { hours = hours * 10 + (buf.get(i++) - '0'); digits++; }
+            if (digits == 0 || i >= end || buf.get(i) != ':') throw malformed(f);
+            i++;
+            digits = 0;
+            while (i < end && isDigit(buf.get(i))) { minutes = minutes * 10 + (buf.get(i++) - '0'); digits++; }
+            if (digits != 2 || hours > 23 || minutes > 59) throw malformed(f);
+            return hours * 60 + minutes;
+        }
+
+        // N from a "(+Nd)" suffix, 0 if there is none
+        private int dayOffset(int f) {
+            int end = fieldEnd[f];
+            for (int i = fieldStart[f]; i + 1 < end; i++) {
+                if (buf.get(i) == '(' && buf.get(i + 1) == '+') {
+                    int n = 0, digits = 0;
+                    for (int j = i + 2; j < end && isDigit(buf.get(j)); j++) { n = n * 10 + (buf.get(j) - '0'); digits++; }
+                    if (digits == 0) throw malformed(f);
+                    return n;
+                }
+            }
+            return 0;
+        }
+
+        private int integer(int f) {
+            int end = fieldEnd[f];
+            int i = skipSpaceAndQuotes(fieldStart[f], end);
+            int n = 0, digits = 0;
+            while (i < end && isDigit(buf.get(i))) { n = n * 10 + (buf.get(i++) - '0'); digits++; }
+            if (digits == 0 || skipSpaceAndQuotes(i, end) != end) throw malformed(f);
+            return n;
+        }
+
+        // Same characters as String.trim(); UTF-8 multi-byte sequences are negative bytes
+        private static boolean isSpace(byte b) {
+            return b >= 0 && b <= ' ';
+        }
+
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+
+        private RuntimeException malformed(int f) {
+            return new NumberFormatException("Malformed CSV value \"" + text(f) + "\" in column " + (f + 1));
         }
-        return set;
     }
 
+    /**
+     * Binary snapshot of a parsed timetable.
+     *
+     * Layout (big-endian):
+     *   header   magic, version, CSV size, CSV mtime, rows, skipped rows,
+     *            string table bytes, string count, CRC32 of everything after the header
+     *   strings  every distinct route id / city / train type / days value once,
+     *            as (byte length, UTF-8 bytes)
+     *   columns  one int[rows] per column, string columns hold string table indexes
+     */
+    private static final class Snapshot {
+        private static final int MAGIC = 0x54545331; // "TTS1"
+        private static final int VERSION = 1;
+        private static final int HEADER = 4 + 4 + 8 + 8 + 4 + 4 + 4 + 4 + 8;
+
+        private static final int ROUTE = 0, FROM = 1, TO = 2, TYPE = 3, DAYS = 4, DEPARTURE = 5,
+                ARRIVAL = 6, DAY_OFFSET = 7, DAY_MASK = 8, FIRST = 9, SECOND = 10, COLUMNS = 11;
+
+        static void write(Path file, long csvSize, long csvModified,
+                          List<TrainConnection> connections, int skipped) throws IOException {
+            int rows = connections.size();
+            Map<String, Integer> ids = new HashMap<>();
+            List<byte[]> strings = new ArrayList<>();
+            int[][] columns = new int[COLUMNS][rows];
+            int stringBytes = 0;
+
+            for (int r = 0; r < rows; r++) {
+                TrainConnection tc = connections.get(r);
+                String[] values = { tc.routeID, tc.departureCity, tc.arrivalCity, tc.trainType, tc.daysOfOperation };
+                for (int c = 0; c < values.length; c++) {
+                    Integer id = ids.get(values[c]);
+                    if (id == null) {
+                        id = strings.size();
+                        ids.put(values[c], id);
+                        byte[] bytes = values[c].getBytes(StandardCharsets.UTF_8);
+                        strings.add(bytes);
+                        stringBytes += 4 + bytes.length;
+                    }
+                    columns[c][r] = id;
+                }
+                columns[DEPARTURE][r] = tc.departureMinute();
+                columns[ARRIVAL][r] = tc.arrivalMinute();
+                columns[DAY_OFFSET][r] = tc.arrivalDayOffset;
+                columns[DAY_MASK][r] = tc.dayMask();
+                columns[FIRST][r] = tc.firstClassRate;
+                columns[SECOND][r] = tc.secondClassRate;
+            }
+
+            int columnStart = align(HEADER + stringBytes);
+            ByteBuffer out = ByteBuffer.allocate(columnStart + COLUMNS * rows * 4);
+            out.position(HEADER);
+            for (byte[] bytes : strings) {
+                out.putInt(bytes.length);
+                out.put(bytes);
+            }
+            for (int c = 0; c < COLUMNS; c++) {
+                out.position(columnStart + c * rows * 4);
+                out.asIntBuffer().put(columns[c]);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(out.duplicate().position(HEADER).limit(out.capacity()));
+            out.position(0);
+            out.putInt(MAGIC).putInt(VERSION).putLong(csvSize).putLong(csvModified)
+                    .putInt(rows).putInt(skipped).putInt(stringBytes).putInt(strings.size())
+                    .putLong(crc.getValue());
+            out.position(0);
+
+            // Written next to the target and moved over it, so readers never see half a file
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (out.hasRemaining()) ch.write(out);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Replaces trainConnections with the snapshot's rows. Returns false, leaving the list
+         * untouched, when the snapshot is missing, stale or damaged.
+         */
+        static boolean read(Path file, long csvSize, long csvModified) {
+            if (!Files.isRegularFile(file)) return false;
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (ch.size() < HEADER) return false;
+                ByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                if (in.getInt() != MAGIC || in.getInt() != VERSION) return false;
+                if (in.getLong() != csvSize || in.getLong() != csvModified) return false;
+                int rows = in.getInt();
+                int skipped = in.getInt();
+                int stringBytes = in.getInt();
+                int stringCount = in.getInt();
+                long checksum = in.getLong();
+
+                int columnStart = align(HEADER + stringBytes);
+                if (rows < 0 || stringBytes < 0 || (long) columnStart + (long) COLUMNS * rows * 4 != ch.size()) return false;
+                CRC32 crc = new CRC32();
+                crc.update(in.duplicate().position(HEADER));
+                if (crc.getValue() != checksum) return false;
+
+                String[] strings = new String[stringCount];
+                byte[] scratch = new byte[64];
+                for (int i = 0; i < stringCount; i++) {
+                    int length = in.getInt();
+                    if (length > scratch.length) scratch = new byte[length];
+                    in.get(scratch, 0, length);
+                    strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+                }
+
+                IntBuffer[] columns = new IntBuffer[COLUMNS];
+                for (int c = 0; c < COLUMNS; c++) {
+                    columns[c] = in.duplicate().position(columnStart + c * rows * 4).limit(columnStart + (c + 1) * rows * 4)
+                            .slice().asIntBuffer();
+                }
+
+                ArrayList<TrainConnection> loaded = new ArrayList<>(rows);
+                Map<Integer, Duration> durations = new HashMap<>();
+                for (int r = 0; r < rows; r++) {
+                    TrainConnection tc = new TrainConnection();
+                    tc.routeID = strings[columns[ROUTE].get(r)];
+                    tc.departureCity = strings[columns[FROM].get(r)];
+                    tc.arrivalCity = strings[columns[TO].get(r)];
+                    tc.trainType = strings[columns[TYPE].get(r)];
+                    tc.daysOfOperation = strings[columns[DAYS].get(r)];
+                    tc.departureMinute = columns[DEPARTURE].get(r);
+                    tc.arrivalMinute = columns[ARRIVAL].get(r);
+                    tc.arrivalDayOffset = columns[DAY_OFFSET].get(r);
+                    tc.dayMask = columns[DAY_MASK].get(r);
+                    tc.firstClassRate = columns[FIRST].get(r);
+                    tc.secondClassRate = columns[SECOND].get(r);
+                    tc.departureTime = CsvParser.TIMES[tc.departureMinute];
+                    tc.arrivalTime = CsvParser.TIMES[tc.arrivalMinute];
+                    tc.durationMinutes = tc.arrivalMinute + tc.arrivalDayOffset * 24 * 60 - tc.departureMinute;
+                    tc.tripDuration = durations.computeIfAbsent(tc.durationMinutes, m -> Duration.ofMinutes(m));
+                    loaded.add(tc);
+                }
+
+                publish(loaded);
+                skippedRowCount = skipped;
+                return true;
+            } catch (IOException | RuntimeException e) {
+                // An unreadable snapshot is only a cache miss; the CSV is parsed instead
+                return false;
+            }
+        }
+
+        private static int align(int offset) {
+            return (offset + 3) & ~3;
+        }
+    }
 }
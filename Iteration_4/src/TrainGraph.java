@@ -1,9 +1,16 @@
 // TrainGraph.java
 import java.time.DayOfWeek;
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Weighted train graph using full TrainConnection.
@@ -19,24 +26,214 @@ import java.util.function.Predicate;
  */
 public class TrainGraph {
 
-    // Adjacency: departure -> (arrival -> list of TrainConnection edges)
-    private final Map<String, Map<String, List<TrainConnection>>> graph = new HashMap<>();
+    /**
+     * Everything the searches read. A State is never modified once published: every change
+     * builds a new one and swaps the reference, so a search that already started keeps a
+     * consistent timetable and never waits for a writer. Writers are synchronized.
+     */
+    private static final class State {
+        // Adjacency: departure -> (arrival -> list of TrainConnection edges)
+        final Map<String, Map<String, List<TrainConnection>>> graph;
+        // Integer-indexed copy of the same edges, used by the path searches
+        final CompactTrainGraph compact;
+        // Fastest path per pair and departure day, null until built (see precomputeFastestPaths)
+        final FastestPathTable fastest;
+        // routeID -> connection
+        final Map<String, TrainConnection> byRouteId;
+
+        State(Map<String, Map<String, List<TrainConnection>>> graph, CompactTrainGraph compact,
+              FastestPathTable fastest) {
+            this(graph, compact, fastest, routeIndex(compact));
+        }
+
+        private State(Map<String, Map<String, List<TrainConnection>>> graph, CompactTrainGraph compact,
+                      FastestPathTable fastest, Map<String, TrainConnection> byRouteId) {
+            this.graph = graph;
+            this.compact = compact;
+            this.fastest = fastest;
+            this.byRouteId = byRouteId;
+        }
+
+        State withFastest(FastestPathTable table) {
+            return new State(graph, compact, table, byRouteId);
+        }
+
+        private static Map<String, TrainConnection> routeIndex(CompactTrainGraph compact) {
+            Map<String, TrainConnection> index = new HashMap<>(compact.edgeCount() * 2);
+            for (int e = 0; e < compact.edgeCount(); e++) {
+                TrainConnection tc = compact.connection(e);
+                if (tc.getRouteID() != null) index.putIfAbsent(tc.getRouteID(), tc);
+            }
+            return index;
+        }
+    }
+
+    private volatile State state;
 
     public TrainGraph(List<TrainConnection> connections) {
+        Map<String, Map<String, List<TrainConnection>>> graph = new HashMap<>();
         for (TrainConnection tc : connections) {
-            addEdge(tc);
+            addEdge(graph, tc);
         }
+        this.state = new State(graph, new CompactTrainGraph(connections), null);
+    }
+
+    /** Adds a connection and refreshes the fastest-path table for the pairs it can affect. */
+    public synchronized void addConnection(TrainConnection tc) {
+        Map<String, Map<String, List<TrainConnection>>> graph = copyOf(state.graph);
+        addEdge(graph, tc);
+        publish(graph, Collections.singleton(tc.departureCity), false);
+    }
+
+    /** Removes a connection (if present) and refreshes the fastest-path table accordingly. */
+    public synchronized boolean removeConnection(TrainConnection tc) {
+        Map<String, Map<String, List<TrainConnection>>> graph = copyOf(state.graph);
+        Map<String, List<TrainConnection>> m = graph.get(tc.departureCity);
+        if (m == null) return false;
+        List<TrainConnection> lst = m.get(tc.arrivalCity);
+        if (lst == null || !lst.remove(tc)) return false;
+        if (lst.isEmpty()) m.remove(tc.arrivalCity);
+        if (m.isEmpty()) graph.remove(tc.departureCity);
+        publish(graph, Collections.singleton(tc.departureCity), false);
+        return true;
+    }
+
+    /** Outcome of reload: counts by route id and the timetable now in the graph. */
+    public static final class ReloadResult {
+        public final int inserted;
+        public final int updated;
+        public final int deleted;
+        public final int unchanged;
+        /** The reloaded connections in input order; unchanged routes keep their existing objects. */
+        public final List<TrainConnection> connections;
+
+        ReloadResult(int inserted, int updated, int deleted, int unchanged, List<TrainConnection> connections) {
+            this.inserted = inserted;
+            this.updated = updated;
+            this.deleted = deleted;
+            this.unchanged = unchanged;
+            this.connections = Collections.unmodifiableList(connections);
+        }
+
+        public boolean changed() { return inserted + updated + deleted > 0; }
+
+        @Override
+        public String toString() {
+            return String.format("%d added, %d updated, %d removed, %d unchanged",
+                    inserted, updated, deleted, unchanged);
+        }
+    }
+
+    /**
+     * Replaces the timetable with {@code connections}, matched to the current one by route id:
+     * new ids are inserted, ids that are gone are deleted and ids whose cities, times, days,
+     * train type or prices differ are updated. The new state is built on the side and swapped
+     * in at once; only the fastest-path rows that can see a changed route are recomputed.
+     * Throws IllegalArgumentException, leaving the graph untouched, if a route id is missing
+     * or repeated.
+     */
+    public synchronized ReloadResult reload(List<TrainConnection> connections) {
+        State current = state;
+        Map<String, TrainConnection> existing = new HashMap<>();
+        List<TrainConnection> withoutId = new ArrayList<>();
+        for (TrainConnection tc : edgesOf(current.graph)) {
+            if (tc.getRouteID() == null) withoutId.add(tc);
+            else existing.put(tc.getRouteID(), tc);
+        }
+
+        List<TrainConnection> merged = new ArrayList<>(connections.size());
+        Set<String> seen = new HashSet<>();
+        Set<String> changedDepartures = new HashSet<>();
+        int inserted = 0, updated = 0, unchanged = 0;
+        for (TrainConnection tc : connections) {
+            String id = tc.getRouteID();
+            if (id == null) throw new IllegalArgumentException("Connection without route id: " + tc);
+            if (!seen.add(id)) throw new IllegalArgumentException("Duplicate route id: " + id);
+
+            TrainConnection old = existing.get(id);
+            if (old == null) {
+                inserted++;
+                changedDepartures.add(tc.departureCity);
+                merged.add(tc);
+            } else if (old.sameAs(tc)) {
+                unchanged++;
+                merged.add(old);
+            } else {
+                updated++;
+                changedDepartures.add(old.departureCity);
+                changedDepartures.add(tc.departureCity);
+                merged.add(tc);
+            }
+        }
+
+        int deleted = withoutId.size();
+        for (TrainConnection tc : withoutId) changedDepartures.add(tc.departureCity);
+        for (Map.Entry<String, TrainConnection> e : existing.entrySet()) {
+            if (!seen.contains(e.getKey())) {
+                deleted++;
+                changedDepartures.add(e.getValue().departureCity);
+            }
+        }
+
+        ReloadResult result = new ReloadResult(inserted, updated, deleted, unchanged, merged);
+        if (!result.changed()) return result;
+
+        Map<String, Map<String, List<TrainConnection>>> graph = new HashMap<>();
+        for (TrainConnection tc : merged) addEdge(graph, tc);
+        publish(graph, changedDepartures, true);
+        return result;
+    }
+
+    // Swaps in a new state for the given adjacency. The fastest-path table (if built) is
+    // copied and only the rows that can use a connection leaving a changed city are redone.
+    private void publish(Map<String, Map<String, List<TrainConnection>>> graph,
+                         Set<String> changedDepartures, boolean parallel) {
+        State current = state;
+        CompactTrainGraph updated = new CompactTrainGraph(edgesOf(graph), current.compact);
+
+        FastestPathTable table = current.fastest;
+        if (table != null) {
+            if (updated.cityCount() != table.cityCount()) {
+                table = new FastestPathTable(updated, parallel); // new city: ids grew, rebuild
+            } else {
+                int[] cities = changedDepartures.stream().mapToInt(updated::cityId).toArray();
+                table = table.refreshed(current.compact, updated, cities);
+            }
+        }
+        state = new State(graph, updated, table);
     }
 
     /** Add a single directed edge */
-    private void addEdge(TrainConnection tc) {
+    private static void addEdge(Map<String, Map<String, List<TrainConnection>>> graph, TrainConnection tc) {
         graph.computeIfAbsent(tc.departureCity, k -> new HashMap<>())
              .computeIfAbsent(tc.arrivalCity, k -> new ArrayList<>())
              .add(tc);
     }
 
+    private static Map<String, Map<String, List<TrainConnection>>> copyOf(
+            Map<String, Map<String, List<TrainConnection>>> graph) {
+        Map<String, Map<String, List<TrainConnection>>> copy = new HashMap<>();
+        for (Map.Entry<String, Map<String, List<TrainConnection>>> from : graph.entrySet()) {
+            Map<String, List<TrainConnection>> m = new HashMap<>();
+            for (Map.Entry<String, List<TrainConnection>> to : from.getValue().entrySet()) {
+                m.put(to.getKey(), new ArrayList<>(to.getValue()));
+            }
+            copy.put(from.getKey(), m);
+        }
+        return copy;
+    }
+
+    private static List<TrainConnection> edgesOf(Map<String, Map<String, List<TrainConnection>>> graph) {
+        List<TrainConnection> all = new ArrayList<>();
+        for (Map<String, List<TrainConnection>> m : graph.values()) {
+            for (List<TrainConnection> lst : m.values()) all.addAll(lst);
+        }
+        return all;
+    }
+
     /** All cities that appear as departure or arrival. */
     public Set<String> getAllCities() {
+        Map<String, Map<String, List<TrainConnection>>> graph = state.graph;
         Set<String> cities = new HashSet<>(graph.keySet());
         for (Map<String, List<TrainConnection>> m : graph.values()) {
             cities.addAll(m.keySet());
@@ -44,9 +241,14 @@ public class TrainGraph {
         return cities;
     }
 
+    /** The connection with the given route id, or null if the graph has none. */
+    public TrainConnection getConnectionByRouteId(String routeId) {
+        return state.byRouteId.get(routeId);
+    }
+
     /** Direct connections list from -> to (may be empty). */
     public List<TrainConnection> getConnections(String from, String to) {
-        Map<String, List<TrainConnection>> m = graph.get(from);
+        Map<String, List<TrainConnection>> m = state.graph.get(from);
         if (m == null) return Collections.emptyList();
         List<TrainConnection> lst = m.get(to);
         return (lst == null) ? Collections.emptyList() : Collections.unmodifiableList(lst);
@@ -54,7 +256,7 @@ public class TrainGraph {
 
     /** All outgoing connections from a city. */
     public List<TrainConnection> getConnectionsFrom(String from) {
-        Map<String, List<TrainConnection>> m = graph.get(from);
+        Map<String, List<TrainConnection>> m = state.graph.get(from);
         if (m == null) return Collections.emptyList();
         List<TrainConnection> all = new ArrayList<>();
         for (List<TrainConnection> lst : m.values()) all.addAll(lst);
@@ -63,14 +265,14 @@ public class TrainGraph {
 
     /** Is there at least one direct edge from -> to? */
     public boolean hasDirect(String from, String to) {
-        Map<String, List<TrainConnection>> m = graph.get(from);
+        Map<String, List<TrainConnection>> m = state.graph.get(from);
         return m != null && m.containsKey(to) && !m.get(to).isEmpty();
     }
 
     /** Count distinct directed edges. */
     public int edgeCount() {
         int sum = 0;
-        for (Map<String, List<TrainConnection>> m : graph.values()) {
+        for (Map<String, List<TrainConnection>> m : state.graph.values()) {
             for (List<TrainConnection> lst : m.values()) sum += lst.size();
         }
         return sum;
@@ -84,12 +286,69 @@ public class TrainGraph {
         public final String to;
         public final List<TrainConnection> edges;
         public final Duration totalDuration;
+        /** Day the first train leaves, or null if the path is not tied to a day. */
+        public final DayOfWeek departureDay;
 
         public PathResult(String from, String to, List<TrainConnection> edges) {
             this.from = from;
             this.to = to;
             this.edges = Collections.unmodifiableList(new ArrayList<>(edges));
             this.totalDuration = computeTotalWithWaits(this.edges);
+            this.departureDay = null;
+        }
+
+        /** Path whose total duration is already known from a time-dependent search. */
+        PathResult(String from, String to, List<TrainConnection> edges, Duration totalDuration) {
+            this(from, to, edges, totalDuration, null);
+        }
+
+        private PathResult(String from, String to, List<TrainConnection> edges, Duration totalDuration,
+                           DayOfWeek departureDay) {
+            this.from = from;
+            this.to = to;
+            this.edges = Collections.unmodifiableList(new ArrayList<>(edges));
+            this.totalDuration = totalDuration;
+            this.departureDay = departureDay;
+        }
+
+        /** Same path, leaving on the given day (null: not tied to a day). */
+        public PathResult withDepartureDay(DayOfWeek day) {
+            return new PathResult(from, to, edges, totalDuration, day);
+        }
+
+        /**
+         * Day the trip starts on: departureDay if set, otherwise the first day the first
+         * train runs. This is the day toString() shows.
+         */
+        public DayOfWeek startDay() {
+            if (departureDay != null || edges.isEmpty()) return departureDay;
+            return edges.get(0).operatingDaysSet().iterator().next();
+        }
+
+        /**
+         * For each train, the number of days after the start of the trip it leaves on
+         * (0 for the first train), on the same timeline as toString().
+         */
+        public int[] departureDayOffsets() {
+            int[] offsets = new int[edges.size()];
+            if (edges.isEmpty()) return offsets;
+            long currentAbs = edges.get(0).departureMinute();
+            for (int i = 0; i < edges.size(); i++) {
+                TrainConnection e = edges.get(i);
+                long depAbs = alignToNextOrSame(currentAbs, e.departureMinute());
+                offsets[i] = (int) (depAbs / 1440);
+                currentAbs = depAbs + e.durationMinutes();
+            }
+            return offsets;
+        }
+
+        /** True if every train runs on the date it is taken when the first one leaves on {@code date}. */
+        public boolean runsOn(LocalDate date) {
+            int[] offsets = departureDayOffsets();
+            for (int i = 0; i < offsets.length; i++) {
+                if (!edges.get(i).runsOn(date.plusDays(offsets[i]).getDayOfWeek())) return false;
+            }
+            return true;
         }
 
         /** # of intermediate cities = edges - 1 (0..2) */
@@ -98,23 +357,19 @@ public class TrainGraph {
         private static Duration computeTotalWithWaits(List<TrainConnection> edges) {
             if (edges.isEmpty()) return Duration.ZERO;
 
-            long startAbs = minutesOfDay(edges.get(0).departureTime);
+            long startAbs = edges.get(0).departureMinute();
             long curAbs = startAbs;
 
             for (TrainConnection e : edges) {
-                int depMin = minutesOfDay(e.departureTime);
+                int depMin = e.departureMinute();
                 long depAbs = alignToNextOrSame(curAbs, depMin);
-                long travel = e.tripDuration.toMinutes();
+                long travel = e.durationMinutes();
                 curAbs = depAbs + travel;
             }
             long totalMins = Math.max(0, curAbs - startAbs);
             return Duration.ofMinutes(totalMins);
         }
 
-        private static int minutesOfDay(LocalTime t) {
-            return t.getHour() * 60 + t.getMinute();
-        }
-
         private static long alignToNextOrSame(long currentAbs, int targetMinOfDay) {
             long day = currentAbs / 1440; // minutes in a day
             long candidate = day * 1440 + targetMinOfDay;
@@ -144,22 +399,22 @@ public class TrainGraph {
 
             StringBuilder sb = new StringBuilder();
 
-            // Pick a valid departure day from the first train's operating days
-            DayOfWeek startDay = edges.get(0).operatingDaysSet().iterator().next();
+            // The chosen departure day, or a valid one from the first train's operating days
+            DayOfWeek startDay = startDay();
 
             // Track timeline through the journey
-            long currentAbs = minutesOfDay(edges.get(0).departureTime);
+            long currentAbs = edges.get(0).departureMinute();
 
             for (int i = 0; i < edges.size(); i++) {
                 TrainConnection e = edges.get(i);
 
                 // Calculate departure time for this train
-                int depMin = minutesOfDay(e.departureTime);
+                int depMin = e.departureMinute();
                 long depAbs = alignToNextOrSame(currentAbs, depMin);
                 int depDayOffset = (int)(depAbs / 1440);
 
                 // Calculate arrival time
-                long travelMins = e.tripDuration.toMinutes();
+                long travelMins = e.durationMinutes();
                 long arrAbs = depAbs + travelMins;
                 int arrDayOffset = (int)(arrAbs / 1440);
 
@@ -182,7 +437,7 @@ public class TrainGraph {
                 // If there's a next connection, show layover
                 if (i < edges.size() - 1) {
                     TrainConnection nextTrain = edges.get(i + 1);
-                    int nextDepMin = minutesOfDay(nextTrain.departureTime);
+                    int nextDepMin = nextTrain.departureMinute();
                     long nextDepAbs = alignToNextOrSame(arrAbs, nextDepMin);
                     long layoverMins = nextDepAbs - arrAbs;
                     long layoverHours = layoverMins / 60;
@@ -213,12 +468,13 @@ public class TrainGraph {
     /** Enumerate ALL simple paths between ALL pairs (from -> to) with ≤ 3 edges. */
     public Map<String, Map<String, List<PathResult>>> allPathsUpToTwoIntermediates() {
         final int MAX_EDGES = 3;
+        Map<String, Map<String, List<TrainConnection>>> graph = state.graph;
         Map<String, Map<String, List<PathResult>>> result = new HashMap<>();
         for (String source : getAllCities()) {
             Deque<TrainConnection> path = new ArrayDeque<>();
             Set<String> visited = new HashSet<>();
             visited.add(source);
-            dfsCollect(source, source, MAX_EDGES, visited, path, result);
+            dfsCollect(graph, source, source, MAX_EDGES, visited, path, result);
         }
         return result;
     }
@@ -227,36 +483,174 @@ public class TrainGraph {
     public Map<String, Map<String, List<PathResult>>> allPathsUpToTwoIntermediates(
             Predicate<TrainConnection> edgeFilter) {
         final int MAX_EDGES = 3;
+        Map<String, Map<String, List<TrainConnection>>> graph = state.graph;
         Map<String, Map<String, List<PathResult>>> result = new HashMap<>();
         for (String source : getAllCities()) {
             Deque<TrainConnection> path = new ArrayDeque<>();
             Set<String> visited = new HashSet<>();
             visited.add(source);
-            dfsCollectFiltered(source, source, MAX_EDGES, visited, path, edgeFilter, result);
+            dfsCollectFiltered(graph, source, source, MAX_EDGES, visited, path, edgeFilter, result);
         }
         return result;
     }
 
+    /**
+     * Same result as allPathsUpToTwoIntermediates(edgeFilter), with the source cities
+     * spread over a ForkJoinPool of the given parallelism. Every source is expanded into
+     * its own map and the maps are merged once all sources are done.
+     */
+    public Map<String, Map<String, List<PathResult>>> allPathsUpToTwoIntermediates(
+            Predicate<TrainConnection> edgeFilter, int parallelism) {
+        final int MAX_EDGES = 3;
+        CompactTrainGraph g = state.compact;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> IntStream.range(0, g.cityCount())
+                    .parallel()
+                    .mapToObj(source -> Map.entry(g.cityName(source), g.pathsFrom(source, MAX_EDGES, edgeFilter)))
+                    .filter(e -> !e.getValue().isEmpty())
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Path enumeration interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Path enumeration failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // ---------- Lazy path streams ----------
+
+    /**
+     * Lazily enumerates ALL simple paths (1–3 edges) between all pairs that satisfy the
+     * filter. Paths are produced by the DFS only as the stream pulls them, so
+     * short-circuiting operations such as limit / findFirst / anyMatch stop the search.
+     */
+    public Stream<PathResult> streamPaths(Predicate<TrainConnection> edgeFilter) {
+        CompactTrainGraph g = state.compact;
+        return stream(g.pathIterator(0, g.cityCount() - 1, -1, 3, edgeFilter));
+    }
+
+    /** Lazily enumerates the simple paths (1–3 edges) starting at {@code from}. */
+    public Stream<PathResult> streamPaths(String from, Predicate<TrainConnection> edgeFilter) {
+        CompactTrainGraph g = state.compact;
+        int source = g.cityId(from);
+        if (source < 0) return Stream.empty();
+        return stream(g.pathIterator(source, source, -1, 3, edgeFilter));
+    }
+
+    /** Lazily enumerates the simple paths (1–3 edges) from -> to. */
+    public Stream<PathResult> streamPaths(String from, String to, Predicate<TrainConnection> edgeFilter) {
+        CompactTrainGraph g = state.compact;
+        int source = g.cityId(from);
+        int target = g.cityId(to);
+        if (source < 0 || target < 0) return Stream.empty();
+        return stream(g.pathIterator(source, source, target, 3, edgeFilter));
+    }
+
+    private static Stream<PathResult> stream(Iterator<PathResult> it) {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * The k first paths of a stream in the given order, sorted, holding at most k paths
+     * at a time (unlike sorted().limit(k), which keeps the whole stream).
+     */
+    public static List<PathResult> best(Stream<PathResult> paths, int k, Comparator<PathResult> order) {
+        if (k <= 0) return new ArrayList<>();
+        PriorityQueue<PathResult> heap = new PriorityQueue<>(k, order.reversed()); // worst on top
+        paths.forEach(p -> {
+            if (heap.size() < k) {
+                heap.add(p);
+            } else if (order.compare(p, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(p);
+            }
+        });
+        List<PathResult> out = new ArrayList<>(heap);
+        out.sort(order);
+        return out;
+    }
+
     /** Paths between specific cities (1–3 edges) that satisfy a given Filter. */
     public List<PathResult> pathsUpToTwoIntermediates(String from, String to, Predicate<TrainConnection> edgeFilter) {
         final int MAX_EDGES = 3;
-        List<PathResult> out = new ArrayList<>();
-        Deque<TrainConnection> path = new ArrayDeque<>();
-        Set<String> visited = new HashSet<>();
-        visited.add(from);
+        CompactTrainGraph g = state.compact;
+        return g.paths(g.cityId(from), g.cityId(to), MAX_EDGES, edgeFilter);
+    }
 
-        Map<String, Map<String, List<PathResult>>> sink = new HashMap<>();
-        dfsCollectFiltered(from, from, MAX_EDGES, visited, path, edgeFilter, sink);
+    /**
+     * Same paths as pathsUpToTwoIntermediates, found by expanding one hop forward from
+     * {@code from} and one hop backward from {@code to} and joining them in the middle.
+     * Cheaper when only a single from -> to pair is needed on a dense network.
+     */
+    public List<PathResult> pathsUpToTwoIntermediatesBidirectional(String from, String to,
+                                                                   Predicate<TrainConnection> edgeFilter) {
+        CompactTrainGraph g = state.compact;
+        return g.pathsBidirectional(g.cityId(from), g.cityId(to), edgeFilter);
+    }
 
-        Map<String, List<PathResult>> m = sink.get(from);
-        if (m != null) {
-            List<PathResult> lst = m.get(to);
-            if (lst != null) out.addAll(lst);
-        }
+    /** Ranking used by topPaths. */
+    public enum PathOrder { DURATION, FIRST_CLASS_PRICE, SECOND_CLASS_PRICE }
+
+    /**
+     * The k best paths between specific cities (1–3 edges) by the given order, best first
+     * (ties broken by total duration). Only paths accepted by pathFilter are ranked.
+     * The search keeps a heap of k paths and uses the current k-th best as a bound.
+     */
+    public List<PathResult> topPaths(String from, String to, int k, PathOrder order,
+                                     Predicate<TrainConnection> edgeFilter,
+                                     Predicate<PathResult> pathFilter) {
+        final int MAX_EDGES = 3;
+        CompactTrainGraph g = state.compact;
+        return g.topK(g.cityId(from), g.cityId(to), MAX_EDGES, k, order, edgeFilter, pathFilter);
+    }
+
+    /**
+     * Paths between specific cities (1–3 edges) that are not beaten on every criterion by
+     * another path: total duration, first-class price, second-class price and number of trains.
+     * Only paths accepted by pathFilter are considered. Sorted by total duration.
+     */
+    public List<PathResult> paretoOptimalPaths(String from, String to,
+                                               Predicate<TrainConnection> edgeFilter,
+                                               Predicate<PathResult> pathFilter) {
+        final int MAX_EDGES = 3;
+        CompactTrainGraph g = state.compact;
+        List<PathResult> out = g.paretoPaths(g.cityId(from), g.cityId(to),
+                MAX_EDGES, edgeFilter, pathFilter);
+        out.sort(Comparator.comparing((PathResult p) -> p.totalDuration));
         return out;
     }
 
-    private void dfsCollectFiltered(String origin,
+    // ---------- Earliest arrival (time-dependent) ----------
+
+    /** Earliest-arrival trip with at most 2 connections, like the path enumeration above. */
+    public PathResult earliestArrival(String from, String to, DayOfWeek day, LocalTime notBefore,
+                                      Predicate<TrainConnection> edgeFilter) {
+        return earliestArrival(from, to, day, notBefore, 2, edgeFilter);
+    }
+
+    /**
+     * Trip from -> to that leaves on {@code day} at or after {@code notBefore} and arrives
+     * as early as possible, using at most maxTransfers connections (maxTransfers + 1 trains).
+     * Each train is only boarded on a day it operates; the search looks one week ahead.
+     * totalDuration of the result runs from the first departure to the final arrival.
+     * Returns null if no such trip exists.
+     */
+    public PathResult earliestArrival(String from, String to, DayOfWeek day, LocalTime notBefore,
+                                      int maxTransfers, Predicate<TrainConnection> edgeFilter) {
+        final int HORIZON_DAYS = 8;
+        int startMinute = notBefore.getHour() * 60 + notBefore.getMinute();
+        CompactTrainGraph g = state.compact;
+        return g.earliestArrival(g.cityId(from), g.cityId(to),
+                day.getValue() - 1, startMinute, maxTransfers + 1, HORIZON_DAYS, edgeFilter);
+    }
+
+    private void dfsCollectFiltered(Map<String, Map<String, List<TrainConnection>>> graph,
+                                    String origin,
                                     String currentCity,
                                     int edgesRemaining,
                                     Set<String> visitedCities,
@@ -282,7 +676,7 @@ public class TrainGraph {
                     .computeIfAbsent(nextCity, k -> new ArrayList<>())
                     .add(new PathResult(origin, nextCity, new ArrayList<>(path)));
 
-                dfsCollectFiltered(origin, nextCity, edgesRemaining - 1, visitedCities, path, edgeFilter, sink);
+                dfsCollectFiltered(graph, origin, nextCity, edgesRemaining - 1, visitedCities, path, edgeFilter, sink);
 
                 visitedCities.remove(nextCity);
                 path.removeLast();
@@ -290,7 +684,8 @@ public class TrainGraph {
         }
     }
 
-    private void dfsCollect(String origin,
+    private void dfsCollect(Map<String, Map<String, List<TrainConnection>>> graph,
+                            String origin,
                             String currentCity,
                             int edgesRemaining,
                             Set<String> visitedCities,
@@ -313,7 +708,7 @@ public class TrainGraph {
                     .computeIfAbsent(nextCity, k -> new ArrayList<>())
                     .add(new PathResult(origin, nextCity, new ArrayList<>(path)));
 
-                dfsCollect(origin, nextCity, edgesRemaining - 1, visitedCities, path, sink);
+                dfsCollect(graph, origin, nextCity, edgesRemaining - 1, visitedCities, path, sink);
 
                 visitedCities.remove(nextCity);
                 path.removeLast();
@@ -321,19 +716,50 @@ public class TrainGraph {
         }
     }
 
+    // ---------- Fastest path per pair (precomputed) ----------
+
+    /**
+     * Builds the fastest-path table for every pair and departure day (≤ 3 edges).
+     * Sources are processed on the common ForkJoin pool when parallel is true.
+     */
+    public synchronized void precomputeFastestPaths(boolean parallel) {
+        State current = state;
+        state = current.withFastest(new FastestPathTable(current.compact, parallel));
+    }
+
+    // Current state, building its fastest-path table first if there is none yet
+    private State withFastestTable() {
+        State current = state;
+        if (current.fastest != null) return current;
+        synchronized (this) {
+            if (state.fastest == null) state = state.withFastest(new FastestPathTable(state.compact, true));
+            return state;
+        }
+    }
+
+    /**
+     * Fastest path from -> to whose trains all run on {@code day} (any day if null),
+     * looked up in the precomputed table. Returns null if there is none.
+     */
+    public PathResult fastestPath(String from, String to, DayOfWeek day) {
+        State s = withFastestTable();
+        FastestPathTable table = s.fastest;
+        CompactTrainGraph g = s.compact;
+        int slot = (day == null) ? FastestPathTable.ANY_DAY : day.getValue() - 1;
+        return table.get(g.cityId(from), g.cityId(to), slot);
+    }
+
     /** Best (shortest duration) path per pair within the same bound. */
     public Map<String, Map<String, PathResult>> fastestPathPerPairUpToTwoIntermediates() {
-        Map<String, Map<String, List<PathResult>>> all = allPathsUpToTwoIntermediates();
+        State s = withFastestTable();
+        FastestPathTable table = s.fastest;
+        CompactTrainGraph g = s.compact;
         Map<String, Map<String, PathResult>> best = new HashMap<>();
-        for (Map.Entry<String, Map<String, List<PathResult>>> eFrom : all.entrySet()) {
-            String from = eFrom.getKey();
-            for (Map.Entry<String, List<PathResult>> eTo : eFrom.getValue().entrySet()) {
-                String to = eTo.getKey();
-                PathResult min = eTo.getValue().stream()
-                        .min(Comparator.comparing(p -> p.totalDuration))
-                        .orElse(null);
-                if (min != null) {
-                    best.computeIfAbsent(from, k -> new HashMap<>()).put(to, min);
+        for (int from = 0; from < table.cityCount(); from++) {
+            for (int to = 0; to < table.cityCount(); to++) {
+                PathResult p = table.get(from, to, FastestPathTable.ANY_DAY);
+                if (p != null) {
+                    best.computeIfAbsent(g.cityName(from), k -> new HashMap<>()).put(g.cityName(to), p);
                 }
             }
         }
@@ -350,7 +776,7 @@ public class TrainGraph {
         sb.append(String.format("TrainGraph: %d cities, %d direct connections%n",
                 cityCount(), edgeCount()));
 
-        for (Map.Entry<String, Map<String, List<TrainConnection>>> fromEntry : graph.entrySet()) {
+        for (Map.Entry<String, Map<String, List<TrainConnection>>> fromEntry : state.graph.entrySet()) {
             for (Map.Entry<String, List<TrainConnection>> toEntry : fromEntry.getValue().entrySet()) {
                 for (TrainConnection tc : toEntry.getValue()) {
                     long mins = tc.tripDuration.toMinutes();
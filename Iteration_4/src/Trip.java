@@ -1,17 +1,18 @@
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.*;
 
 public class Trip{
     int id;
-    private static int counter = 0;
+    // Trip ids come from the "Trip" row of IdSequence, shared by every planner instance
+    private static final IdAllocator ids = new IdAllocator("Trip",
+            Integer.parseInt(DBManager.setting("db.idBlockSize", "50")));
     private ArrayList<Reservation> reservations;
     private boolean isFromPreviousSession;
+    private LocalDate travelDate;                 // day the first train leaves, null if not booked for a date
+    private SeatInventory.SeatClass seatClass;    // null if not booked for a class
 
     public Trip(ArrayList<CustomerCatalog.Customer> clients, TrainGraph.PathResult pathResult){
-        id = Trip.counter++;
+        id = ids.nextIntId();
         reservations = new ArrayList<>();
         for (CustomerCatalog.Customer client: clients){
             reservations.add(new Reservation(client, pathResult));
@@ -19,23 +20,6 @@ public class Trip{
         this.isFromPreviousSession = false; // Default to current session
     }
 
-    // Initialize counter based on max ID in database
-    public static void initializeCounter() {
-        String sql = "SELECT MAX(trip_id) as max_id FROM Trip";
-        try (Connection conn = DBManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-            if (rs.next()) {
-                int maxId = rs.getInt("max_id");
-                counter = maxId + 1; // Start from next available ID
-                System.out.println("Trip counter initialized to: " + counter);
-            }
-        } catch (SQLException e) {
-            System.out.println("Could not initialize Trip counter: " + e.getMessage());
-            counter = 0; // Fallback to 0 if query fails
-        }
-    }
-
     // Getters and setters
     public ArrayList<Reservation> getReservations() {
         return this.reservations;
@@ -45,6 +29,19 @@ public class Trip{
         return this.id;
     }
 
+    public LocalDate getTravelDate() {
+        return this.travelDate;
+    }
+
+    public SeatInventory.SeatClass getSeatClass() {
+        return this.seatClass;
+    }
+
+    public void setSeats(LocalDate travelDate, SeatInventory.SeatClass seatClass) {
+        this.travelDate = travelDate;
+        this.seatClass = seatClass;
+    }
+
     public boolean isFromPreviousSession() {
         return this.isFromPreviousSession;
     }
@@ -1,31 +1,43 @@
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.function.Predicate;
 
 public class driver {
     
     private static final Scanner in = new Scanner(System.in);
+    private static final int SORTED_TRIPS_SHOWN = 20; // trips listed by the price and duration sorts
 
     public static void main(String[] args) {
-        // Initialize counters from database before anything else
-        Trip.initializeCounter();
-        Reservation.initializeCounter();
-
-        loader();
     String csv = (args.length > 0) ? args[0] : "Iteration_3/eu_rail_network.csv";
-        TrainConnection.loadTrainConnectionsFromCSV(csv);
+        TrainConnection.loadTrainConnections(csv, Runtime.getRuntime().availableProcessors());
+        if (TrainConnection.getSkippedRowCount() > 0) {
+            System.out.println("Skipped " + TrainConnection.getSkippedRowCount() + " malformed row(s) in " + csv);
+        }
         TrainGraph g = new TrainGraph(TrainConnection.trainConnections);
+        g.precomputeFastestPaths(true);
+        if (Boolean.parseBoolean(DBManager.setting("db.writeBehind", "false"))) {
+            try {
+                CustomerCatalog.enableWriteBehind(
+                        Path.of(DBManager.setting("db.writeBehind.journal", "bookings.journal")),
+                        Integer.parseInt(DBManager.setting("db.writeBehind.capacity", "1000")),
+                        Integer.parseInt(DBManager.setting("db.writeBehind.batchSize", "50")),
+                        Long.parseLong(DBManager.setting("db.writeBehind.flushMillis", "500")));
+            } catch (IOException e) {
+                System.out.println("Write-behind disabled, bookings are saved directly: " + e.getMessage());
+            }
+        }
             CustomerCatalog customerCatalog = new CustomerCatalog();
         while (true) {
             System.out.println("\n=== RAIL PLANNER ===");
             System.out.println("1) List available cities");
             System.out.println("2) Plan a trip (≤ 2 connections)");
             System.out.println("3) View bookings (Existing customers only)");
-            System.out.println("4) Quit");
+            System.out.println("4) Reload timetable");
+            System.out.println("5) Quit");
             System.out.print("Choose: ");
             int choice = readInt();
             switch (choice) {
@@ -42,11 +54,20 @@ public class driver {
                 String lastName = in.nextLine();
                 System.out.println("Please Enter your ID:");
                 String id = in.nextLine();
-                customerCatalog.viewTripFromDB(lastName, id);
+                customerCatalog.viewTripFromDB(lastName, id, g, driver::promptMoreTrips);
                 break;
 
 
                 case 4:
+                    reloadTimetable(g, csv);
+                    break;
+
+                case 5:
+                    CustomerCatalog.disableWriteBehind();
+                    System.out.println("Customer cache: " + CustomerCatalog.customerCacheStats());
+                    System.out.println("Bookings: " + CustomerCatalog.bookingStats());
+                    System.out.println("Connection pool: " + DBManager.poolStats());
+                    DBManager.shutdown();
                     System.out.println("Goodbye!");
                     return;
                 default:
@@ -55,69 +76,19 @@ public class driver {
         }
     }
     
-    public static void loader() {
-            CustomerCatalog customerCatalog = new CustomerCatalog();
-
-            String sql =
-            "SELECT c.first_name, c.last_name, c.age, c.identifier, t.route " +
-            "FROM Customer c " +
-            "JOIN Trip t ON c.customer_id = t.customer_id";
-
-
-            try (Connection conn = DBManager.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql);
-                ResultSet rs = stmt.executeQuery()) {
-
-                while (rs.next()) {
-                    String firstName = rs.getString("first_name");
-                    String lastName = rs.getString("last_name");
-                    int age = rs.getInt("age");
-                    String identifier = rs.getString("identifier");
-                    String routeString = rs.getString("route");
-
-                    // Create or find the customer
-                    CustomerCatalog.Customer customer = customerCatalog.find(identifier, firstName, lastName);
-                    if (customer == null)
-                        customer = customerCatalog.add(firstName, lastName, identifier, age);
-
-                    // Build edges from the route string
-                    List<TrainConnection> edges = new ArrayList<>();
-                    if (routeString != null && !routeString.isEmpty()) {
-                        for (String id : routeString.split("\\|")) {
-                            for (TrainConnection tc : TrainConnection.trainConnections) {
-                                if (tc.getRouteID().equals(id.trim())) {
-                                    edges.add(tc);
-                                    break;
-                                }
-                            }
-                        }
-                    }
-
-                    // Build PathResult and Trip, then attach to customer
-                    if (!edges.isEmpty()) {
-                        TrainGraph.PathResult path = new TrainGraph.PathResult(
-                                edges.get(0).departureCity,
-                                edges.get(edges.size() - 1).arrivalCity,
-                                edges
-                        );
-
-                        ArrayList<CustomerCatalog.Customer> list = new ArrayList<>();
-                        list.add(customer);
-
-                        Trip trip = list.get(0).bookTrip(list, path);
-                        trip.setFromPreviousSession(true); // Mark as loaded from database
-                        for (CustomerCatalog.Customer c : list) {
-                            c.addTrip(trip);
-                        }
-                    }
-                }
-
-                System.out.println("Trips successfully rebuilt and assigned to customers!");
-
-            } catch (SQLException e) {
-                System.out.println("Error rebuilding trips: " + e.getMessage());
-            }
+    // Re-reads the CSV and applies the differences to the live graph
+    private static void reloadTimetable(TrainGraph g, String csv) {
+        ArrayList<TrainConnection> current = TrainConnection.trainConnections;
+        try {
+            TrainConnection.loadTrainConnections(csv, Runtime.getRuntime().availableProcessors());
+            TrainGraph.ReloadResult result = g.reload(TrainConnection.trainConnections);
+            TrainConnection.trainConnections = new ArrayList<>(result.connections);
+            System.out.println("Timetable reloaded: " + result);
+        } catch (RuntimeException e) {
+            TrainConnection.trainConnections = current;
+            System.out.println("Reload failed, keeping the current timetable: " + e.getMessage());
         }
+    }
 
     private static void listCities(TrainGraph g) {
         ArrayList<String> cities = new ArrayList<>(g.getAllCities());
@@ -168,21 +139,21 @@ public class driver {
         int maxLayoverMinutes = promptMaxLayover();
 
         // Build one predicate that enforces both day and train-type constraints
+        int daysMask = TrainConnection.dayMaskOf(daysSelected);
         Predicate<TrainConnection> predicate = (tc) -> {
             boolean typeOK = typesSelected.isEmpty() || typesSelected.contains(tc.trainType);
-            boolean dayOK  = daysSelected.isEmpty() || runsOnAny(tc, daysSelected);
+            boolean dayOK  = daysSelected.isEmpty() || tc.runsOnAny(daysMask);
             return typeOK && dayOK;
         };
 
-        List<TrainGraph.PathResult> paths = g.pathsUpToTwoIntermediates(from, to, predicate);
-
-        // Filter paths where all trains share at least one common operating day
-        paths.removeIf(p -> !allTrainsShareCommonDay(p.edges));
+        // Path-level constraints: all trains share at least one common operating day,
+        // and no layover is longer than the maximum (0 = no limit)
+        Predicate<TrainGraph.PathResult> pathPredicate = (p) ->
+                allTrainsShareCommonDay(p.edges)
+                && (maxLayoverMinutes <= 0 || !hasExcessiveLayover(p, maxLayoverMinutes));
 
-        // Filter paths based on maximum layover time
-        if (maxLayoverMinutes > 0) {
-            paths.removeIf(p -> hasExcessiveLayover(p, maxLayoverMinutes));
-        }
+        List<TrainGraph.PathResult> paths = g.pathsUpToTwoIntermediates(from, to, predicate);
+        paths.removeIf(pathPredicate.negate());
 
         if (paths == null || paths.isEmpty()) {
             System.out.println("\nNo trips found with ≤ 2 connections from " + from + " to " + to + ".");
@@ -201,21 +172,23 @@ public class driver {
             System.out.println("2) Sort by total DURATION");
             System.out.println("3) Toggle price class (now " + (useFirstClass ? "FIRST" : "SECOND") + ")");
             System.out.println("4) Book a trip");
-            System.out.println("5) Back to main menu");
+            System.out.println("5) Show only best trade-offs (duration / price / connections)");
+            System.out.println("6) Back to main menu");
             System.out.print("Choose: ");
 
             int opt = readInt();
             switch (opt) {
-                case 1: {
-                    final boolean sortFirstClass = useFirstClass; // capture as effectively final
-                    Comparator<TrainGraph.PathResult> cmp = Comparator
-                            .comparingInt((TrainGraph.PathResult p) -> sumPrice(p, sortFirstClass))
-                            .thenComparing((TrainGraph.PathResult p) -> p.totalDuration);
-                    shown.sort(cmp);
+                case 1:
+                    // Only the cheapest trips are searched for, not every trip sorted
+                    shown = g.topPaths(from, to, SORTED_TRIPS_SHOWN, useFirstClass
+                            ? TrainGraph.PathOrder.FIRST_CLASS_PRICE : TrainGraph.PathOrder.SECOND_CLASS_PRICE,
+                            predicate, pathPredicate);
+                    System.out.println("\nShowing the " + shown.size() + " cheapest of " + paths.size() + " trips.");
                     break;
-                }
                 case 2:
-                    shown.sort(Comparator.comparing((TrainGraph.PathResult pr) -> pr.totalDuration));
+                    shown = g.topPaths(from, to, SORTED_TRIPS_SHOWN, TrainGraph.PathOrder.DURATION,
+                            predicate, pathPredicate);
+                    System.out.println("\nShowing the " + shown.size() + " fastest of " + paths.size() + " trips.");
                     break;
                 case 3:
                     useFirstClass = !useFirstClass;
@@ -232,6 +205,10 @@ public class driver {
                         break;
                      }
                 case 5:
+                    // Drop every trip that another trip beats on duration, both prices and connections
+                    shown = g.paretoOptimalPaths(from, to, predicate, pathPredicate);
+                    break;
+                case 6:
                     return;
                 default:
                     System.out.println("Invalid option.");
@@ -239,10 +216,20 @@ public class driver {
         }
     }
      private static void bookTrip(CustomerCatalog customerCatalog, TrainGraph.PathResult chosenPath) {
+    LocalDate date = promptTravelDate(chosenPath);
+    SeatInventory.SeatClass seatClass = promptSeatClass();
+    int seatsLeft = customerCatalog.seatsLeft(chosenPath, date, seatClass);
+    System.out.println(seatsLeft + " seat(s) left in " + seatClass.name().toLowerCase() + " class on " + date + ".");
+
     System.out.print("How many travellers? ");
     int numTravellers = readInt();
+    if (numTravellers > seatsLeft) {
+        System.out.println("Not enough seats left for " + numTravellers + " traveller(s).");
+        return;
+    }
 
     ArrayList<CustomerCatalog.Customer> allCustomers = new ArrayList<>();
+    ArrayList<CustomerCatalog.Customer> newCustomers = new ArrayList<>();
     Set<String> usedIdsThisBooking = new HashSet<>();
 
     for (int i = 0; i < numTravellers; i++) {
@@ -284,7 +271,7 @@ public class driver {
                 int age = readInt();
 
                 customerTemp = customerCatalog.add(firstName, lastName, id, age);
-                customerCatalog.saveCustomerToDB(customerTemp);
+                newCustomers.add(customerTemp);
                 usedIdsThisBooking.add(id);
                 customerConfirmed = true;
             }
@@ -293,22 +280,28 @@ public class driver {
         allCustomers.add(customerTemp);
     }
 
-    // Create the trip in memory
-    Trip trip = allCustomers.get(0).bookTrip(allCustomers, chosenPath);
-    for (CustomerCatalog.Customer c : allCustomers) {
-        c.addTrip(trip);
+    // Take the seats on every train and create the trip in memory, or nothing if a train filled up meanwhile
+    Trip trip;
+    try {
+        trip = customerCatalog.bookTrip(allCustomers, chosenPath, date, seatClass);
+    } catch (IllegalStateException | IllegalArgumentException e) {
+        System.out.println("\nThe booking could not be made, please try again later: " + e.getMessage());
+        return;
+    }
+    if (trip == null) {
+        System.out.println("\nSorry, a train of this trip is now full in " + seatClass.name().toLowerCase()
+                + " class on " + date + ". Nothing was booked.");
+        return;
     }
 
-    // Save the trip to DB for ALL customers
-    for (CustomerCatalog.Customer c : allCustomers) {
-        int tripId = customerCatalog.saveTripToDB(trip, c, chosenPath);
-
-        // Save all reservations using the actual trip_id from database
-        if (tripId > 0) {
-            for (Reservation reservation : trip.getReservations()) {
-                customerCatalog.saveReservationToDB(reservation, tripId);
-            }
-        }
+    // Save new customers, the trip and the reservations in one transaction
+    boolean saved = customerCatalog.saveBooking(newCustomers, allCustomers, trip,
+            chosenPath.withDepartureDay(date.getDayOfWeek()));
+    if (!saved) {
+        customerCatalog.cancelTrip(allCustomers, trip, chosenPath);
+        System.out.println("\nThe booking could not be saved (a train may have filled up in the meantime)."
+                + " Nothing was booked.");
+        return;
     }
 
     System.out.println("\n\n========================================");
@@ -351,6 +344,45 @@ public class driver {
         }
     }
 
+    // Date of the first train; every train must run on the day it is taken
+    private static LocalDate promptTravelDate(TrainGraph.PathResult path) {
+        while (true) {
+            System.out.print("Travel date (yyyy-mm-dd): ");
+            String s = in.nextLine().trim();
+            if (s.isEmpty()) continue;
+            try {
+                LocalDate date = LocalDate.parse(s);
+                if (date.isBefore(LocalDate.now())) {
+                    System.out.println("That date is in the past.");
+                } else if (!path.runsOn(date)) {
+                    System.out.println("A train of this trip does not run on the day it would be taken when leaving on "
+                            + date + ".");
+                } else {
+                    return date;
+                }
+            } catch (DateTimeParseException e) {
+                System.out.println("Please enter a date like 2025-03-14.");
+            }
+        }
+    }
+
+    // Asked after each full page of stored trips
+    private static boolean promptMoreTrips() {
+        System.out.print("Press Enter for more trips, or type q to stop: ");
+        return !in.nextLine().trim().equalsIgnoreCase("q");
+    }
+
+    private static SeatInventory.SeatClass promptSeatClass() {
+        while (true) {
+            System.out.print("Class (1 = first, 2 = second): ");
+            switch (readInt()) {
+                case 1: return SeatInventory.SeatClass.FIRST;
+                case 2: return SeatInventory.SeatClass.SECOND;
+                default: System.out.println("Please enter 1 or 2.");
+            }
+        }
+    }
+
     private static int readInt() {
         while (true) {
             String s = in.nextLine().trim();
@@ -460,39 +492,7 @@ public class driver {
         }
     }
 
-    // ---------- Price helper ----------
-    private static int sumPrice(TrainGraph.PathResult p, boolean firstClass) {
-        int sum = 0;
-        for (TrainConnection e : p.edges) {
-            sum += firstClass ? e.firstClassRate : e.secondClassRate;
-        }
-        return sum;
-    }
-
     // ---------- Day filtering helpers ----------
-    private static boolean runsOnAny(TrainConnection tc, EnumSet<DayOfWeek> selected) {
-        if (selected == null || selected.isEmpty()) return true; // no restriction
-        EnumSet<DayOfWeek> op = operatingDays(tc.daysOfOperation);
-        for (DayOfWeek d : selected) if (op.contains(d)) return true;
-        return false;
-    }
-
-    private static EnumSet<DayOfWeek> operatingDays(String spec) {
-        String s = spec.replace("\"", "").trim();
-        if (s.equalsIgnoreCase("Daily")) return EnumSet.allOf(DayOfWeek.class);
-
-        if (s.contains(",") && !s.contains("-")) { // "Mon,Wed,Fri"
-            EnumSet<DayOfWeek> set = EnumSet.noneOf(DayOfWeek.class);
-            for (String tok : s.split(",")) set.add(tokenToDay(tok.trim()));
-            return set;
-        }
-        if (s.contains("-")) { // "Fri-Sun" (wrap OK)
-            return daysRange(s);
-        }
-        // Single day like "Mon"
-        return EnumSet.of(tokenToDay(s));
-    }
-
     private static EnumSet<DayOfWeek> daysRange(String range) {
         String[] parts = range.split("-");
         DayOfWeek start = tokenToDay(parts[0].trim());
@@ -545,10 +545,10 @@ public class driver {
  
 
     private static boolean allTrainsShareCommonDay(List<TrainConnection> edges) {
-    EnumSet<DayOfWeek> common = EnumSet.allOf(DayOfWeek.class);
+    int common = TrainConnection.ALL_DAYS;
     for (TrainConnection tc : edges) {
-        common.retainAll(tc.operatingDaysSet());
-        if (common.isEmpty()) return false;
+        common &= tc.dayMask();
+        if (common == 0) return false;
     }
     return true;
 }
@@ -561,19 +561,19 @@ public class driver {
         List<TrainConnection> edges = path.edges;
         if (edges.size() <= 1) return false; // Direct route, no layover
 
-        long curAbs = minutesOfDay(edges.get(0).departureTime);
+        long curAbs = edges.get(0).departureMinute();
 
         for (int i = 0; i < edges.size(); i++) {
             TrainConnection currentTrain = edges.get(i);
-            int depMin = minutesOfDay(currentTrain.departureTime);
+            int depMin = currentTrain.departureMinute();
             long depAbs = alignToNextOrSame(curAbs, depMin);
-            long travel = currentTrain.tripDuration.toMinutes();
+            long travel = currentTrain.durationMinutes();
             long arrivalAbs = depAbs + travel;
 
             // If there's a next train, check the layover time
             if (i < edges.size() - 1) {
                 TrainConnection nextTrain = edges.get(i + 1);
-                int nextDepMin = minutesOfDay(nextTrain.departureTime);
+                int nextDepMin = nextTrain.departureMinute();
                 long nextDepAbs = alignToNextOrSame(arrivalAbs, nextDepMin);
 
                 long layoverMinutes = nextDepAbs - arrivalAbs;
@@ -587,10 +587,6 @@ public class driver {
         return false;
     }
 
-    private static int minutesOfDay(java.time.LocalTime t) {
-        return t.getHour() * 60 + t.getMinute();
-    }
-
     private static long alignToNextOrSame(long currentAbs, int targetMinOfDay) {
         long day = currentAbs / 1440; // minutes in a day
         long candidate = day * 1440 + targetMinOfDay;